@@ -0,0 +1,73 @@
+package se.hornta.commando;
+
+final class ArgumentCursor {
+  private final String label;
+  private final String[] args;
+  private int offset;
+
+  ArgumentCursor(String label, String[] args) {
+    this.label = label;
+    this.args = args;
+    this.offset = 0;
+  }
+
+  ArgumentCursor(String[] args) {
+    this.label = null;
+    this.args = args;
+    this.offset = 1;
+  }
+
+  int size() {
+    return args.length + 1 - offset;
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+  String get(int index) {
+    int position = offset + index;
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+
+    return position == 0 ? label : args[position - 1];
+  }
+
+  String last() {
+    return get(size() - 1);
+  }
+
+  void advance() {
+    if (isEmpty()) {
+      throw new IllegalStateException("No arguments left");
+    }
+
+    offset += 1;
+  }
+
+  String join(int fromIndex) {
+    int size = size();
+    if (fromIndex >= size) {
+      return "";
+    }
+
+    if (fromIndex == size - 1) {
+      return get(fromIndex);
+    }
+
+    int length = size - fromIndex - 1;
+    for (int i = fromIndex; i < size; i++) {
+      length += get(i).length();
+    }
+
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = fromIndex; i < size; i++) {
+      if (i > fromIndex) {
+        builder.append(' ');
+      }
+      builder.append(get(i));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,225 @@
+package se.hornta.commando;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+final class AsyncCompletion {
+  private static final int MAX_REMEMBERED = 256;
+  private static final int MAX_QUEUED = 64;
+
+  private final Map<CommandSender, LastResult> lastResults = new LinkedHashMap<CommandSender, LastResult>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CommandSender, LastResult> eldest) {
+      return size() > MAX_REMEMBERED;
+    }
+  };
+  private final Map<CommandSender, Pending> pending = new HashMap<>();
+  private Executor executor;
+  private ThreadPoolExecutor defaultExecutor;
+  private ScheduledExecutorService deadlines;
+  private boolean shutdown;
+  private volatile long deadlineMillis = 50;
+
+  synchronized void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  void setDeadline(long millis) {
+    this.deadlineMillis = millis;
+  }
+
+  // Completes with the computed suggestions, or with the sender's last known suggestions if they take longer
+  // than the deadline. A computation that hasn't started by then, or that is replaced by a newer request from
+  // the same sender, is cancelled. One that is already running is still remembered for the next request.
+  CompletableFuture<List<String>> complete(CommandSender sender, String[] input, Function<String[], List<String>> completer) {
+    CompletableFuture<List<String>> result = new CompletableFuture<>();
+
+    Pending task = new Pending();
+    ScheduledExecutorService deadlines;
+    try {
+      deadlines = getDeadlines();
+      task.computation = CompletableFuture.supplyAsync(() -> {
+        if (!task.claimed.compareAndSet(false, true)) {
+          throw new CancellationException();
+        }
+        return completer.apply(input);
+      }, getExecutor());
+    } catch (RejectedExecutionException e) {
+      result.complete(getFallback(sender, input));
+      return result;
+    }
+
+    Pending previous;
+    synchronized (pending) {
+      previous = pending.put(sender, task);
+    }
+    if (previous != null) {
+      previous.cancelIfQueued();
+    }
+
+    task.computation.whenComplete((List<String> suggestions, Throwable error) -> {
+      synchronized (pending) {
+        pending.remove(sender, task);
+      }
+
+      if (error != null) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (!(cause instanceof CancellationException)) {
+          Bukkit.getLogger().log(Level.SEVERE, cause.getMessage(), cause);
+        }
+        result.complete(getFallback(sender, input));
+        return;
+      }
+
+      remember(sender, input, suggestions);
+      result.complete(suggestions);
+    });
+
+    if (!result.isDone()) {
+      try {
+        ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+          task.cancelIfQueued();
+          result.complete(getFallback(sender, input));
+        }, deadlineMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((List<String> suggestions, Throwable error) -> deadline.cancel(false));
+      } catch (RejectedExecutionException e) {
+        task.cancelIfQueued();
+        result.complete(getFallback(sender, input));
+      }
+    }
+
+    return result;
+  }
+
+  // Stops the completion threads, done when the plugin given to Commando.registerListeners() disables
+  synchronized void shutdown() {
+    shutdown = true;
+    if (defaultExecutor != null) {
+      defaultExecutor.shutdownNow();
+    }
+    if (deadlines != null) {
+      deadlines.shutdownNow();
+    }
+  }
+
+  void forget(CommandSender sender) {
+    synchronized (lastResults) {
+      lastResults.remove(sender);
+    }
+
+    Pending task;
+    synchronized (pending) {
+      task = pending.remove(sender);
+    }
+    if (task != null) {
+      task.cancelIfQueued();
+    }
+  }
+
+  private void remember(CommandSender sender, String[] input, List<String> suggestions) {
+    synchronized (lastResults) {
+      lastResults.put(sender, new LastResult(input, Collections.unmodifiableList(new ArrayList<>(suggestions))));
+    }
+  }
+
+  private List<String> getFallback(CommandSender sender, String[] input) {
+    LastResult last;
+    synchronized (lastResults) {
+      last = lastResults.get(sender);
+    }
+
+    if (last == null || last.input.length != input.length) {
+      return Collections.emptyList();
+    }
+
+    int lastIndex = input.length - 1;
+    for (int i = 0; i < lastIndex; i++) {
+      if (!last.input[i].equalsIgnoreCase(input[i])) {
+        return Collections.emptyList();
+      }
+    }
+
+    String previous = last.input[lastIndex];
+    String current = input[lastIndex];
+    if (current.length() < previous.length() || !current.regionMatches(true, 0, previous, 0, previous.length())) {
+      return Collections.emptyList();
+    }
+
+    List<String> narrowed = new ArrayList<>();
+    for (String suggestion : last.suggestions) {
+      if (suggestion.regionMatches(true, 0, current, 0, current.length())) {
+        narrowed.add(suggestion);
+      }
+    }
+    return narrowed;
+  }
+
+  // Once shut down this throws RejectedExecutionException, callers already handle a saturated executor
+  synchronized Executor getExecutor() {
+    if (shutdown) {
+      throw new RejectedExecutionException("Completion has been shut down");
+    }
+    if (executor != null) {
+      return executor;
+    }
+    if (defaultExecutor == null) {
+      // a bounded queue so that completions pile up as fallbacks instead of unbounded work
+      defaultExecutor = new ThreadPoolExecutor(
+        2,
+        2,
+        60,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(MAX_QUEUED),
+        daemonThreads("Commando completion")
+      );
+      defaultExecutor.allowCoreThreadTimeOut(true);
+    }
+    return defaultExecutor;
+  }
+
+  private synchronized ScheduledExecutorService getDeadlines() {
+    if (shutdown) {
+      throw new RejectedExecutionException("Completion has been shut down");
+    }
+    if (deadlines == null) {
+      deadlines = Executors.newSingleThreadScheduledExecutor(daemonThreads("Commando completion deadline"));
+    }
+    return deadlines;
+  }
+
+  private static ThreadFactory daemonThreads(String name) {
+    return (Runnable runnable) -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static final class Pending {
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private CompletableFuture<List<String>> computation;
+
+    // a computation that is already running is left alone so its result can still be remembered
+    void cancelIfQueued() {
+      if (claimed.compareAndSet(false, true)) {
+        computation.cancel(false);
+      }
+    }
+  }
+
+  private static final class LastResult {
+    private final String[] input;
+    private final List<String> suggestions;
+
+    private LastResult(String[] input, List<String> suggestions) {
+      this.input = input;
+      this.suggestions = suggestions;
+    }
+  }
+}
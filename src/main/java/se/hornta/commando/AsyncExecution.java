@@ -0,0 +1,196 @@
+package se.hornta.commando;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+// Runs the handlers of async commands off the main thread and keeps track of every async or future handler until
+// it has finished. Failures are reported back on the main thread as a validation result with status
+// ERR_HANDLER_FAILED, and handlers running past their command's timeout are cancelled.
+final class AsyncExecution {
+  private final Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+  private Executor executor;
+  private ExecutorService defaultExecutor;
+  private ScheduledExecutorService timeouts;
+  private boolean shutdown;
+  private volatile Executor mainThread;
+
+  synchronized void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  void setMainThreadExecutor(Executor mainThread) {
+    this.mainThread = mainThread;
+  }
+
+  boolean hasMainThreadExecutor() {
+    return mainThread != null;
+  }
+
+  Executor getMainThreadExecutorOrNull() {
+    return mainThread;
+  }
+
+  void execute(Commando commando, CarbonCommand command, CommandSender sender, ICommandInvocation invocation) {
+    long start = System.nanoTime();
+    Executor mainThread = getMainThreadExecutor();
+    CommandContext context = new CommandContext(sender, command, mainThread);
+    CompletableFuture<Void> result = new CompletableFuture<>();
+
+    try {
+      Executor executor = command.getExecutor() != null ? command.getExecutor() : getExecutor();
+      executor.execute(() -> {
+        if (result.isDone()) {
+          return;
+        }
+
+        try {
+          invocation.invoke(context);
+          result.complete(null);
+        } catch (Throwable e) {
+          // an Error must complete the result too, otherwise it would stay running until its timeout
+          result.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      report(commando, command, sender, e);
+      return;
+    }
+
+    track(commando, command, sender, mainThread, result, start);
+  }
+
+  void execute(Commando commando, CarbonCommand command, CommandSender sender, IFutureCommandHandler handler, ParsedArguments args) {
+    long start = System.nanoTime();
+    Executor mainThread = getMainThreadExecutor();
+    CompletableFuture<?> result;
+    try {
+      result = handler.handle(new CommandContext(sender, command, mainThread), args);
+    } catch (Exception e) {
+      report(commando, command, sender, e);
+      return;
+    }
+
+    if (result == null) {
+      report(commando, command, sender, new IllegalStateException("A future command handler must not return null"));
+      return;
+    }
+
+    track(commando, command, sender, mainThread, result, start);
+  }
+
+  // Handlers on the executor are not interrupted, a cancelled handler that hasn't started yet is skipped
+  void cancelAll() {
+    for (CompletableFuture<?> result : running) {
+      result.cancel(true);
+    }
+  }
+
+  // Cancels what is still running and stops the threads started here, done when the plugin given to
+  // Commando.registerListeners() disables
+  synchronized void shutdown() {
+    shutdown = true;
+    cancelAll();
+    if (defaultExecutor != null) {
+      defaultExecutor.shutdownNow();
+    }
+    if (timeouts != null) {
+      timeouts.shutdownNow();
+    }
+  }
+
+  private void track(Commando commando, CarbonCommand command, CommandSender sender, Executor mainThread, CompletableFuture<?> result, long start) {
+    running.add(result);
+
+    ScheduledFuture<?> timeout = null;
+    if (command.getTimeout() > 0) {
+      try {
+        timeout = getTimeouts().schedule(() -> {
+          if (result.cancel(true)) {
+            mainThread.execute(() -> reportTimeout(commando, command, sender));
+          }
+        }, command.getTimeout(), TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // shut down, nothing started from here is meant to keep running
+        result.cancel(true);
+      }
+    }
+
+    ScheduledFuture<?> scheduledTimeout = timeout;
+    result.whenComplete((Object value, Throwable error) -> {
+      running.remove(result);
+      if (scheduledTimeout != null) {
+        scheduledTimeout.cancel(false);
+      }
+      command.getLatency().record(System.nanoTime() - start);
+
+      if (error instanceof CompletionException && error.getCause() != null) {
+        error = error.getCause();
+      }
+      if (error != null && !(error instanceof CancellationException)) {
+        Throwable cause = error;
+        mainThread.execute(() -> report(commando, command, sender, cause));
+      }
+    });
+  }
+
+  private static void reportTimeout(Commando commando, CarbonCommand command, CommandSender sender) {
+    BiConsumer<CommandSender, CarbonCommand> handler = commando.getTimeoutHandler();
+    if (handler != null) {
+      handler.accept(sender, command);
+    }
+  }
+
+  private static void report(Commando commando, CarbonCommand command, CommandSender sender, Throwable cause) {
+    if (commando.getValidationHandler() == null) {
+      Bukkit.getLogger().log(Level.SEVERE, cause.getMessage(), cause);
+      return;
+    }
+
+    commando.getValidationHandler().accept(new ValidationResult(command, sender, cause));
+  }
+
+  private Executor getMainThreadExecutor() {
+    Executor mainThread = this.mainThread;
+    if (mainThread == null) {
+      throw new Error("Async commands require registerListeners() or setMainThreadExecutor() to be called first");
+    }
+    return mainThread;
+  }
+
+  private synchronized Executor getExecutor() {
+    if (executor != null) {
+      return executor;
+    }
+    if (shutdown) {
+      throw new RejectedExecutionException("Async commands have been shut down");
+    }
+    if (defaultExecutor == null) {
+      defaultExecutor = CommandThreads.newExecutor();
+    }
+    return defaultExecutor;
+  }
+
+  private synchronized ScheduledExecutorService getTimeouts() {
+    if (shutdown) {
+      throw new RejectedExecutionException("Async commands have been shut down");
+    }
+    if (timeouts == null) {
+      timeouts = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "Commando command timeout");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return timeouts;
+  }
+
+  @FunctionalInterface
+  interface ICommandInvocation {
+    void invoke(CommandContext context) throws Exception;
+  }
+}
@@ -0,0 +1,44 @@
+package se.hornta.commando;
+
+import se.hornta.commando.completers.ICompletionSink;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Passes candidates on while keeping a copy of them, as long as the producer runs to the end and stays within
+// the candidate limit.
+final class CandidateRecorder implements ICompletionSink {
+  private final ICompletionSink downstream;
+  private final int maxCandidates;
+  private final List<String> candidates = new ArrayList<>();
+  private boolean stopped;
+  private boolean overflowed;
+
+  CandidateRecorder(ICompletionSink downstream, int maxCandidates) {
+    this.downstream = downstream;
+    this.maxCandidates = maxCandidates;
+  }
+
+  @Override
+  public boolean accept(String candidate) {
+    if (!overflowed) {
+      if (candidates.size() < maxCandidates) {
+        candidates.add(candidate);
+      } else {
+        overflowed = true;
+        candidates.clear();
+      }
+    }
+
+    stopped = !downstream.accept(candidate);
+    return !stopped;
+  }
+
+  boolean isComplete() {
+    return !stopped && !overflowed;
+  }
+
+  String[] toArray() {
+    return candidates.toArray(new String[0]);
+  }
+}
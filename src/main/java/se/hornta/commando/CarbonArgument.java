@@ -3,12 +3,13 @@ package se.hornta.commando;
 import se.hornta.commando.completers.IArgumentHandler;
 import org.bukkit.command.CommandSender;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 public class CarbonArgument implements ICarbonArgument {
@@ -23,9 +24,17 @@ public class CarbonArgument implements ICarbonArgument {
   private int maxLength;
   private Pattern pattern;
   private Map<Class<?>, DefaultArgument> defaultValues;
+  private final ClassValue<DefaultArgument[]> resolvedDefaultValues = new ClassValue<DefaultArgument[]>() {
+    @Override
+    protected DefaultArgument[] computeValue(Class<?> senderType) {
+      return new DefaultArgument[] { resolveDefaultValue(senderType) };
+    }
+  };
   private Set<ICarbonArgument> dependencies;
   private boolean catchRemaining;
   private String permission;
+  private long completionCacheMillis;
+  private Function<CommandSender, ?> completionGroup;
 
   private CarbonArgument() { }
 
@@ -65,16 +74,19 @@ public class CarbonArgument implements ICarbonArgument {
   }
 
   public DefaultArgument getDefaultValue(Class<?> senderType) {
-    if (!defaultValues.containsKey(senderType)) {
-      Set<Class<?>> interfaces = Util.getSuperInterfaces(senderType);
-      for (Class<?> theInterface : interfaces) {
-        if (defaultValues.containsKey(theInterface)) {
-          defaultValues.put(senderType, defaultValues.get(theInterface));
-          break;
-        }
+    return resolvedDefaultValues.get(senderType)[0];
+  }
+
+  // The default of the most specific type the sender is an instance of. Between unrelated types, e.g. two
+  // interfaces, the one whose default was set first wins.
+  private DefaultArgument resolveDefaultValue(Class<?> senderType) {
+    Class<?> mostSpecific = null;
+    for (Class<?> type : defaultValues.keySet()) {
+      if (type.isAssignableFrom(senderType) && (mostSpecific == null || type != mostSpecific && mostSpecific.isAssignableFrom(type))) {
+        mostSpecific = type;
       }
     }
-    return defaultValues.get(senderType);
+    return mostSpecific == null ? null : defaultValues.get(mostSpecific);
   }
 
   public Pattern getPattern() {
@@ -93,6 +105,16 @@ public class CarbonArgument implements ICarbonArgument {
     return permission;
   }
 
+  @Override
+  public long getCompletionCacheMillis() {
+    return completionCacheMillis;
+  }
+
+  @Override
+  public Object getCompletionGroup(CommandSender sender) {
+    return completionGroup.apply(sender);
+  }
+
   public static class Builder {
     private final String name;
     private double min = Double.NEGATIVE_INFINITY;
@@ -102,11 +124,13 @@ public class CarbonArgument implements ICarbonArgument {
     private Pattern pattern;
     private CarbonArgumentType type = CarbonArgumentType.STRING;
     private IArgumentHandler handler;
-    private final Map<Class<?>, DefaultArgument> defaultValues = new HashMap<>();
-    private final Set<ICarbonArgument> dependencies = new HashSet<>();
+    private final Map<Class<?>, DefaultArgument> defaultValues = new LinkedHashMap<>();
+    private final Set<ICarbonArgument> dependencies = new LinkedHashSet<>();
     private boolean showTabCompletion = true;
     private boolean catchRemaining = false;
     private String requiresPermission = null;
+    private long completionCacheMillis = 0;
+    private Function<CommandSender, ?> completionGroup = (CommandSender sender) -> sender;
 
     private boolean touchedMin = false;
     private boolean touchedMax = false;
@@ -118,6 +142,7 @@ public class CarbonArgument implements ICarbonArgument {
     private boolean touchedShowTabCompletion = false;
     private boolean touchedCatchRemaining = false;
     private boolean touchedRequiresPermission = false;
+    private boolean touchedCacheCompletions = false;
 
     public Builder(String name) {
       this.name = name;
@@ -286,6 +311,26 @@ public class CarbonArgument implements ICarbonArgument {
       return this;
     }
 
+    public Builder cacheCompletions(long ttlMillis) {
+      return cacheCompletions(ttlMillis, (CommandSender sender) -> sender);
+    }
+
+    // Senders mapped to the same group share cached completions, e.g. all senders when they see the same candidates
+    public Builder cacheCompletions(long ttlMillis, Function<CommandSender, ?> senderGroup) {
+      if(touchedCacheCompletions) {
+        throw new Error("cacheCompletions() has already been called");
+      }
+
+      if(ttlMillis < 1) {
+        throw new Error("Completion cache time must be at least 1 millisecond");
+      }
+
+      completionCacheMillis = ttlMillis;
+      completionGroup = senderGroup;
+      touchedCacheCompletions = true;
+      return this;
+    }
+
     public Builder requiresPermission(String permission) {
       if(touchedRequiresPermission) {
         throw new Error("requiresPermission() has already been called");
@@ -325,15 +370,15 @@ public class CarbonArgument implements ICarbonArgument {
         throw new Error("A primitive type can not have a handler");
       }
 
+      if (type.isPrimitive() && touchedCacheCompletions) {
+        throw new Error("Call to cacheCompletions() when type has no completions");
+      }
+
       if (type.isCompletable()) {
         if (touchedHandler) {
           throw new Error("A native type can not have a handler");
         }
-        try {
-          handler = (IArgumentHandler) type.getCompleter().getConstructor().newInstance();
-        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-          throw new Error("Something went from when instantiating type completer");
-        }
+        handler = CompleterRegistry.get(type);
       }
 
       CarbonArgument argument = new CarbonArgument();
@@ -348,10 +393,12 @@ public class CarbonArgument implements ICarbonArgument {
       argument.pattern = pattern;
       argument.type = type;
       argument.handler = handler;
-      argument.defaultValues = defaultValues;
+      argument.defaultValues = Collections.unmodifiableMap(new LinkedHashMap<>(defaultValues));
       argument.dependencies = dependencies;
       argument.catchRemaining = catchRemaining;
       argument.permission = requiresPermission;
+      argument.completionCacheMillis = completionCacheMillis;
+      argument.completionGroup = completionGroup;
       return argument;
     }
   }
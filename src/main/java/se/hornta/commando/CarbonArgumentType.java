@@ -5,38 +5,46 @@ import se.hornta.commando.completers.ArtCompleter;
 import se.hornta.commando.completers.BiomeCompleter;
 import se.hornta.commando.completers.BooleanEffectCompleter;
 import se.hornta.commando.completers.GameModeCompleter;
+import se.hornta.commando.completers.IArgumentHandler;
 import se.hornta.commando.completers.MaterialCompleter;
+import se.hornta.commando.completers.OfflinePlayerCompleter;
 import se.hornta.commando.completers.OnlinePlayerCompleter;
 import se.hornta.commando.completers.PotionEffectCompleter;
 import se.hornta.commando.completers.WorldCompleter;
 import se.hornta.commando.completers.WorldNormalCompleter;
 
+import java.util.function.Supplier;
+
 public enum CarbonArgumentType {
   STRING(true),
   INTEGER(true),
   NUMBER(true),
-  BOOLEAN(BooleanEffectCompleter.class),
-  ONLINE_PLAYER(OnlinePlayerCompleter.class),
-  WORLD(WorldCompleter.class),
-  WORLD_NORMAL(WorldNormalCompleter.class),
-  POTION_EFFECT(PotionEffectCompleter.class),
-  GAME_MODE(GameModeCompleter.class),
-  BIOME(BiomeCompleter.class),
-  ART(ArtCompleter.class),
-  MATERIAL(MaterialCompleter.class),
+  BOOLEAN(BooleanEffectCompleter.class, BooleanEffectCompleter::new),
+  ONLINE_PLAYER(OnlinePlayerCompleter.class, OnlinePlayerCompleter::new),
+  OFFLINE_PLAYER(OfflinePlayerCompleter.class, OfflinePlayerCompleter::new),
+  WORLD(WorldCompleter.class, WorldCompleter::new),
+  WORLD_NORMAL(WorldNormalCompleter.class, WorldNormalCompleter::new),
+  POTION_EFFECT(PotionEffectCompleter.class, PotionEffectCompleter::new),
+  GAME_MODE(GameModeCompleter.class, GameModeCompleter::new),
+  BIOME(BiomeCompleter.class, BiomeCompleter::new),
+  ART(ArtCompleter.class, ArtCompleter::new),
+  MATERIAL(MaterialCompleter.class, MaterialCompleter::new),
   DURATION(true),
   OTHER(false);
 
   private final Class<?> completer;
+  private final Supplier<IArgumentHandler> defaultCompleter;
   private final boolean isPrimitive;
 
   CarbonArgumentType(boolean isPrimitive) {
     completer = null;
+    defaultCompleter = null;
     this.isPrimitive = isPrimitive;
   }
 
-  CarbonArgumentType(Class<?> completer) {
+  <T extends IArgumentHandler> CarbonArgumentType(Class<T> completer, Supplier<T> defaultCompleter) {
     this.completer = completer;
+    this.defaultCompleter = defaultCompleter::get;
     isPrimitive = false;
   }
 
@@ -44,10 +52,15 @@ public enum CarbonArgumentType {
     return completer != null;
   }
 
+  // The completer built into the type, the instance arguments of this type use is CompleterRegistry.get(type)
   public Class<?> getCompleter() {
     return completer;
   }
 
+  Supplier<IArgumentHandler> getDefaultCompleter() {
+    return defaultCompleter;
+  }
+
   public boolean isPrimitive() {
     return isPrimitive;
   }
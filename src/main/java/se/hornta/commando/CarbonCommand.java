@@ -5,33 +5,37 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executor;
 
 public class CarbonCommand {
   private final ArrayList<String> parts;
   private ICommandHandler handler;
+  private ITypedCommandHandler typedHandler;
+  private IAsyncCommandHandler asyncHandler;
+  private IFutureCommandHandler futureHandler;
+  private boolean async;
+  private Executor executor;
+  private long timeout;
+  private final CommandLatency latency = new CommandLatency();
   private List<String> permissions = Collections.emptyList();
+  private PermissionTemplate[] permissionTemplates = new PermissionTemplate[0];
   private Boolean preventConsoleCommandSender = false;
   private Boolean preventPlayerCommandSender = false;
   private final List<ICarbonArgument> arguments = new ArrayList<>();
   private String helpText;
-  private final EnumMap<CarbonArgumentType, IArgumentHandler> typeCompleters = new EnumMap<>(CarbonArgumentType.class);
-
-  private static final Pattern permissionArgumentPattern = Pattern.compile("\\[[0-9]+]", Pattern.CASE_INSENSITIVE);
+  private CommandPlan plan = new CommandPlan(Collections.emptyList());
 
   CarbonCommand() {
     this.parts = new ArrayList<>();
   }
 
   public int getNumRequiredArgs(CommandSender sender) {
+    DefaultArgument[] defaults = plan.getDefaults(sender.getClass());
     int num = 0;
-    for (ICarbonArgument argument : arguments) {
-      String permission = argument.getPermission();
-      DefaultArgument defaultArgument = argument.getDefaultValue(sender.getClass());
-      if (defaultArgument != null && (permission == null || sender.hasPermission(permission))) {
+    for (int i = 0; i < plan.size(); i++) {
+      String permission = plan.getPermission(i);
+      if (defaults[i] != null && (permission == null || sender.hasPermission(permission))) {
         num += 1;
       }
     }
@@ -57,6 +61,19 @@ public class CarbonCommand {
     helpText = stringBuilder.insert(0, "/").toString();
   }
 
+  boolean hasParts(String[] prefix, boolean exact) {
+    if (parts.size() < prefix.length || exact && parts.size() != prefix.length) {
+      return false;
+    }
+
+    for (int i = 0; i < prefix.length; i++) {
+      if (!parts.get(i).equalsIgnoreCase(prefix[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   String getPart(Integer index) {
     if (parts.size() - 1 < index) {
       return null;
@@ -69,20 +86,108 @@ public class CarbonCommand {
     return handler;
   }
 
+  public ITypedCommandHandler getTypedHandler() {
+    return typedHandler;
+  }
+
+  public IAsyncCommandHandler getAsyncHandler() {
+    return asyncHandler;
+  }
+
+  public IFutureCommandHandler getFutureHandler() {
+    return futureHandler;
+  }
+
+  public boolean isAsync() {
+    return async || asyncHandler != null;
+  }
+
+  Executor getExecutor() {
+    return executor;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  public CommandLatency getLatency() {
+    return latency;
+  }
+
   public List<ICarbonArgument> getArguments() {
     return arguments;
   }
 
+  CommandPlan getPlan() {
+    return plan;
+  }
+
   public Boolean isLastStep(Integer index) {
     return parts.size() - 1 == index;
   }
 
   public CarbonCommand withHandler(ICommandHandler handler) {
     this.handler = handler;
+    this.typedHandler = null;
+    this.asyncHandler = null;
+    this.futureHandler = null;
+
+    return this;
+  }
+
+  public CarbonCommand withHandler(ITypedCommandHandler handler) {
+    this.typedHandler = handler;
+    this.handler = null;
+    this.asyncHandler = null;
+    this.futureHandler = null;
+
+    return this;
+  }
+
+  public CarbonCommand withAsyncHandler(IAsyncCommandHandler handler) {
+    this.asyncHandler = handler;
+    this.handler = null;
+    this.typedHandler = null;
+    this.futureHandler = null;
 
     return this;
   }
 
+  public CarbonCommand withFutureHandler(IFutureCommandHandler handler) {
+    this.futureHandler = handler;
+    this.handler = null;
+    this.typedHandler = null;
+    this.asyncHandler = null;
+
+    return this;
+  }
+
+  // Permissions and arguments are still checked on the calling thread, only the handler runs on the executor
+  public CarbonCommand async() {
+    async = true;
+    return this;
+  }
+
+  // Async and future handlers still running after the timeout are cancelled and reported to the timeout handler
+  public CarbonCommand timeout(long millis) {
+    if (millis < 1) {
+      throw new Error("Command timeout must be at least 1 millisecond");
+    }
+
+    timeout = millis;
+    return this;
+  }
+
+  public CarbonCommand async(Executor executor) {
+    if (executor == null) {
+      throw new Error("Command executor cannot be null");
+    }
+
+    this.executor = executor;
+    async = true;
+    return this;
+  }
+
   public CarbonCommand withArgument(ICarbonArgument argument) {
     for(ICarbonArgument carbonArgument : arguments) {
       if(carbonArgument.getName().equals(argument.getName())) {
@@ -94,11 +199,18 @@ public class CarbonCommand {
       }
     }
 
+    for (ICarbonArgument dependency : argument.getDependencies()) {
+      if (!arguments.contains(dependency)) {
+        throw new Error("The specified dependency couldn't be found in command arguments");
+      }
+    }
+
     if(!arguments.isEmpty() && arguments.get(arguments.size() - 1).isOptional() && !argument.isOptional()) {
       throw new Error("A non optional argument shouldn't come after an optional argument");
     }
 
     arguments.add(argument);
+    plan = new CommandPlan(arguments);
 
     StringBuilder stringBuilder = new StringBuilder();
     for (String part : parts) {
@@ -131,6 +243,9 @@ public class CarbonCommand {
       permissions = new ArrayList<>();
     }
     permissions.add(permission);
+
+    permissionTemplates = Arrays.copyOf(permissionTemplates, permissionTemplates.length + 1);
+    permissionTemplates[permissionTemplates.length - 1] = PermissionTemplate.compile(permission);
     return this;
   }
 
@@ -145,23 +260,26 @@ public class CarbonCommand {
   }
 
   public boolean checkPermissions(CommandSender sender) {
-    return checkPermissions(sender, Collections.emptyList());
+    for (PermissionTemplate permission : permissionTemplates) {
+      if (sender.hasPermission(permission.getPermission())) {
+        return true;
+      }
+    }
+
+    return permissionTemplates.length == 0;
   }
 
   public boolean checkPermissions(CommandSender sender, List<String> args) {
-    if(permissions.isEmpty()) {
+    return checkPermissions(sender, new ArgumentCursor(args.toArray(new String[0])));
+  }
+
+  boolean checkPermissions(CommandSender sender, ArgumentCursor args) {
+    if(permissionTemplates.length == 0) {
       return true;
     }
 
-    for (String permission : permissions) {
-      Map<String, String> values = new HashMap<>();
-
-      for (int i = 0; i < args.size(); i++) {
-        values.put(String.valueOf(i), args.get(i));
-      }
-
-      String permissionNode = transformPattern(permission, permissionArgumentPattern, values);
-      boolean hasPermission = sender.hasPermission(permissionNode);
+    for (PermissionTemplate permission : permissionTemplates) {
+      boolean hasPermission = sender.hasPermission(permission.resolve(args));
       if (hasPermission) {
         return true;
       }
@@ -179,91 +297,95 @@ public class CarbonCommand {
   }
 
   Boolean hasHandler() {
-    return handler != null;
+    return handler != null || typedHandler != null || asyncHandler != null || futureHandler != null;
   }
 
   public String getHelpText() {
     return helpText;
   }
 
-  Set<String> autoComplete(CommandSender sender, String[] args) throws
-    InstantiationException,
-    IllegalAccessException,
-    NoSuchMethodException,
-    InvocationTargetException
-  {
-    boolean hasPermission = checkPermissions(sender, Arrays.asList(args));
+  // Checks permissions right away and returns the argument handler part, which may run on another thread, or null
+  // when there is nothing to complete
+  Runnable prepareAutoComplete(CommandSender sender, ArgumentCursor args, CompletionSessions sessions, CompletionMemo memo, CompletionCollector collector) {
+    boolean hasPermission = checkPermissions(sender, args);
     if(!hasPermission) {
-      return Collections.emptySet();
+      return null;
     }
 
-    int argumentIndex = args.length - 1;
+    int argumentIndex = args.size() - 1;
 
     if(
       argumentIndex < 0 ||
       argumentIndex >= arguments.size()
     ) {
-      return Collections.emptySet();
+      return null;
     }
 
     ICarbonArgument argument = arguments.get(argumentIndex);
     IArgumentHandler argumentHandler = argument.getHandler();
 
     if (argument.getPermission() != null && !sender.hasPermission(argument.getPermission())) {
-      return Collections.emptySet();
+      return null;
     }
 
     if (argumentHandler == null && !argument.getType().isCompletable() || !argument.isTabCompletionActive()) {
-      return Collections.emptySet();
+      return null;
     }
 
-    Set<String> suggestions = new HashSet<>();
-    Set<String> prevArgs = new HashSet<>();
-    for(ICarbonArgument dependency : argument.getDependencies()) {
-      String dependencyValue = args[arguments.indexOf(dependency)];
-      if(dependency.getHandler() != null && !dependency.getHandler().test(
-        dependency.getHandler().getItems(sender, dependencyValue, prevArgs.toArray(new String[0])),
-        dependencyValue
-      )) {
-        return suggestions;
-      }
+    if(argumentHandler == null) {
+      argumentHandler = CompleterRegistry.get(argument.getType());
+    }
 
-      if(!arguments.contains(dependency)) {
-        throw new Error("The specified dependency couldn't be found in command arguments");
-      }
+    int[] dependencies = plan.getDependencies(argumentIndex);
+    String[] prevArgs = new String[dependencies.length];
+    for(int i = 0; i < dependencies.length; i++) {
+      prevArgs[i] = args.get(dependencies[i]);
+    }
+
+    IArgumentHandler handler = argumentHandler;
+    String input = args.get(argumentIndex);
+    return () -> completeArgument(sender, argumentIndex, argument, handler, dependencies, input, prevArgs, sessions, memo, collector);
+  }
 
-      prevArgs.add(dependencyValue);
+  private void completeArgument(
+    CommandSender sender,
+    int argumentIndex,
+    ICarbonArgument argument,
+    IArgumentHandler argumentHandler,
+    int[] dependencies,
+    String input,
+    String[] prevArgs,
+    CompletionSessions sessions,
+    CompletionMemo memo,
+    CompletionCollector collector
+  ) {
+    for(int i = 0; i < dependencies.length; i++) {
+      ICarbonArgument dependency = arguments.get(dependencies[i]);
+      if(dependency.getHandler() != null && !dependency.getHandler().accepts(sender, prevArgs[i], Arrays.copyOf(prevArgs, i))) {
+        return;
+      }
     }
 
-    if(argumentHandler == null) {
-      if(!typeCompleters.containsKey(argument.getType())) {
-        typeCompleters.put(argument.getType(), (IArgumentHandler) argument.getType().getCompleter().getConstructor().newInstance());
+    if(argument.getCompletionCacheMillis() > 0) {
+      if(!memo.completeCached(sender, argument, argumentHandler, input, prevArgs, collector)) {
+        memo.completeAndCache(sender, argument, argumentHandler, input, prevArgs, collector);
       }
-      argumentHandler = typeCompleters.get(argument.getType());
+      return;
     }
 
-    suggestions.addAll(
-      argumentHandler.getItems(
-        sender,
-        args[argumentIndex],
-        prevArgs.toArray(new String[0]))
+    sessions.complete(
+      sender,
+      argument.getCompletionGroup(sender),
+      this,
+      argumentIndex,
+      argumentHandler,
+      input,
+      prevArgs,
+      collector
     );
-
-    return suggestions;
   }
 
   public Boolean mayHaveArguments() {
     return arguments.size() > 0;
   }
-
-  static String transformPattern(String input, Pattern pattern, Map<String, String> values) {
-    return StringReplacer.replace(input, pattern, (Matcher m) -> {
-      String placeholder = m.group().substring(1, m.group().length() - 1).toLowerCase(Locale.ENGLISH);
-      if (values.containsKey(placeholder)) {
-        return values.get(placeholder);
-      } else {
-        return m.group();
-      }
-    });
-  }
 }
@@ -0,0 +1,35 @@
+package se.hornta.commando;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+public final class CommandContext {
+  private final CommandSender sender;
+  private final CarbonCommand command;
+  private final Executor mainThread;
+
+  CommandContext(CommandSender sender, CarbonCommand command, Executor mainThread) {
+    this.sender = sender;
+    this.command = command;
+    this.mainThread = mainThread;
+  }
+
+  public CommandSender getSender() {
+    return sender;
+  }
+
+  public CarbonCommand getCommand() {
+    return command;
+  }
+
+  public void runOnMainThread(Runnable task) {
+    mainThread.execute(task);
+  }
+
+  public <T> CompletableFuture<T> supplyOnMainThread(Supplier<T> supplier) {
+    return CompletableFuture.supplyAsync(supplier, mainThread);
+  }
+}
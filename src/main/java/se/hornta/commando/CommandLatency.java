@@ -0,0 +1,33 @@
+package se.hornta.commando;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Time from dispatch until the handler of an async or future command finished, including time spent in the queue
+public final class CommandLatency {
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  CommandLatency() { }
+
+  void record(long nanos) {
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public double getAverageMillis() {
+    long samples = count.sum();
+    return samples == 0 ? 0 : totalNanos.sum() / (double) samples / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  public double getMaxMillis() {
+    return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,100 @@
+package se.hornta.commando;
+
+import java.util.List;
+
+final class CommandPlan {
+  private static final String[] NO_ARGS = new String[0];
+
+  private final ICarbonArgument[] arguments;
+  private final int[][] dependencies;
+  private final String[] permissions;
+  private final int catchRemainingIndex;
+  private final ClassValue<DefaultArgument[]> defaults = new ClassValue<DefaultArgument[]>() {
+    @Override
+    protected DefaultArgument[] computeValue(Class<?> senderType) {
+      DefaultArgument[] resolved = new DefaultArgument[arguments.length];
+      for (int i = 0; i < arguments.length; i++) {
+        resolved[i] = arguments[i].getDefaultValue(senderType);
+      }
+      return resolved;
+    }
+  };
+
+  CommandPlan(List<ICarbonArgument> arguments) {
+    this.arguments = arguments.toArray(new ICarbonArgument[0]);
+    this.dependencies = new int[this.arguments.length][];
+    this.permissions = new String[this.arguments.length];
+
+    int catchRemaining = -1;
+    for (int i = 0; i < this.arguments.length; i++) {
+      ICarbonArgument argument = this.arguments[i];
+      dependencies[i] = resolveDependencies(argument, i);
+      permissions[i] = argument.getPermission();
+      if (argument.isCatchRemaining()) {
+        catchRemaining = i;
+      }
+    }
+    catchRemainingIndex = catchRemaining;
+  }
+
+  private int[] resolveDependencies(ICarbonArgument argument, int index) {
+    int[] indices = new int[argument.getDependencies().size()];
+
+    int i = 0;
+    for (ICarbonArgument dependency : argument.getDependencies()) {
+      indices[i] = indexOf(dependency, index);
+      if (indices[i] < 0) {
+        throw new Error("The specified dependency couldn't be found in command arguments");
+      }
+      i += 1;
+    }
+
+    return indices;
+  }
+
+  private int indexOf(ICarbonArgument argument, int before) {
+    for (int i = 0; i < before; i++) {
+      if (arguments[i].equals(argument)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  int size() {
+    return arguments.length;
+  }
+
+  ICarbonArgument getArgument(int index) {
+    return arguments[index];
+  }
+
+  String getPermission(int index) {
+    return permissions[index];
+  }
+
+  int getCatchRemainingIndex() {
+    return catchRemainingIndex;
+  }
+
+  int[] getDependencies(int index) {
+    return dependencies[index];
+  }
+
+  String[] getDependencyValues(int index, String[] values) {
+    int[] indices = dependencies[index];
+    if (indices.length == 0) {
+      return NO_ARGS;
+    }
+
+    String[] dependencyValues = new String[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      dependencyValues[i] = values[indices[i]];
+    }
+    return dependencyValues;
+  }
+
+  DefaultArgument[] getDefaults(Class<?> senderType) {
+    return defaults.get(senderType);
+  }
+}
@@ -1,22 +1,28 @@
 package se.hornta.commando;
 
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.function.BiConsumer;
 
 public class CommandProcessor {
   private final Commando commando;
   private final CarbonCommand command;
   private final CommandSender sender;
-  private final List<String> inputArgs;
+  private final ArgumentCursor inputArgs;
+  private final String[] values;
+  private final ParsedArguments parsed;
+  private final NumberScanner numberScanner = new NumberScanner();
 
-  CommandProcessor(Commando commando, CarbonCommand command, CommandSender sender, List<String> inputArgs) {
+  CommandProcessor(Commando commando, CarbonCommand command, CommandSender sender, ArgumentCursor inputArgs) {
     this.commando = commando;
     this.command = command;
     this.sender = sender;
     this.inputArgs = inputArgs;
+    this.values = new String[command.getPlan().size()];
+    this.parsed = command.getTypedHandler() != null || command.getAsyncHandler() != null || command.getFutureHandler() != null ? new ParsedArguments(values.length) : null;
 
     this.process();
   }
@@ -35,56 +41,48 @@ public class CommandProcessor {
       return;
     }
 
-    int argIndex = 0;
-    for (ICarbonArgument argument : command.getArguments()) {
-      if (argument.isCatchRemaining() && !inputArgs.isEmpty()) {
-        String arg = String.join(" ", inputArgs.subList(argIndex, inputArgs.size()));
-        if(arg.isEmpty()) {
-          break;
-        }
-        inputArgs.subList(argIndex, inputArgs.size()).clear();
-        inputArgs.add(arg);
-      }
-      argIndex += 1;
+    CommandPlan plan = command.getPlan();
+    DefaultArgument[] defaults = plan.getDefaults(sender.getClass());
+    int inputSize = inputArgs.size();
+    int catchRemainingIndex = plan.getCatchRemainingIndex();
+    if (catchRemainingIndex >= inputSize) {
+      catchRemainingIndex = -1;
+    } else if (catchRemainingIndex >= 0) {
+      inputSize = catchRemainingIndex + 1;
     }
 
     int typedArgs = 0;
 
-    List<String> commandArgs = new ArrayList<>();
-    argIndex = 0;
-    for (ICarbonArgument argument : command.getArguments()) {
+    int argIndex = 0;
+    while (argIndex < plan.size()) {
+      ICarbonArgument argument = plan.getArgument(argIndex);
 
-      if(argument.getPermission() != null && !sender.hasPermission(argument.getPermission())) {
+      String permission = plan.getPermission(argIndex);
+      if(permission != null && !sender.hasPermission(permission)) {
         break;
       }
 
-      if(argIndex < inputArgs.size()) {
-        typedArgs += 1;
-      }
-
-      DefaultArgument defaultArgument = argument.getDefaultValue(sender.getClass());
-      String[] prevArgs = getArgumentDependencies(argument);
+      String[] prevArgs = plan.getDependencyValues(argIndex, values);
 
-      if (argIndex >= inputArgs.size() && defaultArgument != null) {
-        Object defaultValue = argument.getDefaultValue(sender.getClass()).getValue(sender, prevArgs);
+      String input;
+      if (argIndex < inputSize) {
+        typedArgs += 1;
+        input = argIndex == catchRemainingIndex ? inputArgs.join(argIndex) : inputArgs.get(argIndex);
+      } else if (defaults[argIndex] != null) {
+        Object defaultValue = defaults[argIndex].getValue(sender, prevArgs);
 
-        String stringValue;
         if(defaultValue == null) {
-          stringValue = "";
+          input = "";
         } else if(defaultValue instanceof Integer) {
-          stringValue = String.valueOf((int)defaultValue);
+          input = String.valueOf((int)defaultValue);
         } else if(defaultValue instanceof Double) {
-          stringValue = String.valueOf((double)defaultValue);
+          input = String.valueOf((double)defaultValue);
         } else if(defaultValue instanceof Boolean) {
-          stringValue = String.valueOf((boolean)defaultValue);
+          input = String.valueOf((boolean)defaultValue);
         } else {
-          stringValue = (String) defaultValue;
+          input = (String) defaultValue;
         }
-
-        inputArgs.add(argIndex, stringValue);
-      }
-
-      if (argIndex > inputArgs.size() - 1) {
+      } else {
         BiConsumer<CommandSender, CarbonCommand> handler = commando.getMissingArgumentHandler();
         if(handler != null) {
           handler.accept(sender, command);
@@ -92,8 +90,7 @@ public class CommandProcessor {
         return;
       }
 
-      String input = inputArgs.get(argIndex);
-      ValidationStatus status = getValidationStatus(argument, input, prevArgs);
+      ValidationStatus status = getValidationStatus(argIndex, argument, input, prevArgs);
       if (status != null) {
         ValidationResult validationResult = new ValidationResult(status, command, argument, sender, input, prevArgs);
 
@@ -107,21 +104,68 @@ public class CommandProcessor {
         return;
       }
 
-      commandArgs.add(inputArgs.get(argIndex));
+      values[argIndex] = input;
+      if (parsed != null) {
+        parse(argIndex, argument, input);
+      }
       argIndex += 1;
     }
 
-    command.getHandler().handle(sender, commandArgs.toArray(new String[0]), typedArgs);
+    if (parsed != null) {
+      parsed.setTypedArgs(typedArgs);
+    }
+
+    if (command.getFutureHandler() != null) {
+      commando.getAsyncExecution().execute(commando, command, sender, command.getFutureHandler(), parsed);
+      return;
+    }
+
+    if (command.getAsyncHandler() != null) {
+      IAsyncCommandHandler handler = command.getAsyncHandler();
+      commando.getAsyncExecution().execute(commando, command, sender, (CommandContext context) -> handler.handle(context, parsed));
+      return;
+    }
+
+    if (parsed != null) {
+      ITypedCommandHandler handler = command.getTypedHandler();
+      if (command.isAsync()) {
+        commando.getAsyncExecution().execute(commando, command, sender, (CommandContext context) -> handler.handle(sender, parsed));
+      } else {
+        handler.handle(sender, parsed);
+      }
+      return;
+    }
+
+    String[] commandArgs = argIndex == values.length ? values : Arrays.copyOf(values, argIndex);
+    int numTypedArgs = typedArgs;
+    ICommandHandler handler = command.getHandler();
+    if (command.isAsync()) {
+      commando.getAsyncExecution().execute(commando, command, sender, (CommandContext context) -> handler.handle(sender, commandArgs, numTypedArgs));
+    } else {
+      handler.handle(sender, commandArgs, typedArgs);
+    }
+  }
+
+  private void parse(int index, ICarbonArgument argument, String input) {
+    parsed.set(index, argument.getType(), input);
+
+    switch (argument.getType()) {
+      case ONLINE_PLAYER:
+        parsed.setObject(index, Bukkit.getPlayerExact(input));
+        break;
+
+      case WORLD:
+      case WORLD_NORMAL:
+        parsed.setObject(index, Bukkit.getWorld(input));
+        break;
+    }
   }
 
-  private ValidationStatus getValidationStatus(ICarbonArgument argument, String input, String[] deps) {
+  private ValidationStatus getValidationStatus(int index, ICarbonArgument argument, String input, String[] deps) {
     ValidationStatus status = null;
 
     if (argument.getHandler() != null) {
-      boolean handlerResult = argument.getHandler().test(
-        argument.getHandler().getItems(sender, input, deps),
-        input
-      );
+      boolean handlerResult = argument.getHandler().accepts(sender, input, deps);
 
       if (!handlerResult) {
         status = ValidationStatus.ERR_OTHER;
@@ -130,10 +174,13 @@ public class CommandProcessor {
       switch (argument.getType()) {
 
         case DURATION:
-          try {
-            DateUtil.parseDuration(input, true);
-          } catch (IllegalArgumentException e) {
+          DurationSpec duration = DurationSpec.parse(input);
+          if (duration == null) {
             status = ValidationStatus.ERR_INCORRECT_TYPE;
+          } else if (parsed != null) {
+            long now = System.currentTimeMillis();
+            long until = DateUtil.applyDuration(duration, now, ZoneId.systemDefault(), true);
+            parsed.setDurationSeconds(index, until - now / 1000);
           }
           break;
 
@@ -145,50 +192,38 @@ public class CommandProcessor {
           }
           break;
 
-        case NUMBER:
-          try {
-            double doubleValue = Double.parseDouble(input);
-            if (doubleValue < argument.getMin()) {
-              status = ValidationStatus.ERR_MIN_LIMIT;
-            } else if (doubleValue > argument.getMax()) {
-              status = ValidationStatus.ERR_MAX_LIMIT;
-            }
-          } catch (NumberFormatException e) {
+        case NUMBER: {
+          NumberScanner.Status scanStatus = numberScanner.scanDouble(input);
+          double doubleValue = numberScanner.getDouble();
+          if (scanStatus != NumberScanner.Status.OK) {
             status = ValidationStatus.ERR_INCORRECT_TYPE;
+          } else if (doubleValue < argument.getMin()) {
+            status = ValidationStatus.ERR_MIN_LIMIT;
+          } else if (doubleValue > argument.getMax()) {
+            status = ValidationStatus.ERR_MAX_LIMIT;
+          } else if (parsed != null) {
+            parsed.setDouble(index, doubleValue);
           }
           break;
+        }
 
-        case INTEGER:
-          try {
-            int integerValue = Integer.parseInt(input);
-            if (integerValue < argument.getMin()) {
-              status = ValidationStatus.ERR_MIN_LIMIT;
-            } else if (integerValue > argument.getMax()) {
-              status = ValidationStatus.ERR_MAX_LIMIT;
-            }
-          } catch (NumberFormatException e) {
+        case INTEGER: {
+          NumberScanner.Status scanStatus = numberScanner.scanInt(input);
+          int integerValue = numberScanner.getInt();
+          if (scanStatus != NumberScanner.Status.OK) {
             status = ValidationStatus.ERR_INCORRECT_TYPE;
+          } else if (integerValue < argument.getMin()) {
+            status = ValidationStatus.ERR_MIN_LIMIT;
+          } else if (integerValue > argument.getMax()) {
+            status = ValidationStatus.ERR_MAX_LIMIT;
+          } else if (parsed != null) {
+            parsed.setInt(index, integerValue);
           }
           break;
+        }
       }
     }
 
     return status;
   }
-
-  private String[] getArgumentDependencies(ICarbonArgument argument) {
-    String[] deps = new String[argument.getDependencies().size()];
-
-    int i = 0;
-    for (ICarbonArgument dependency : argument.getDependencies()) {
-      if (!command.getArguments().contains(dependency)) {
-        throw new Error("The specified dependency couldn't be found in command arguments");
-      }
-
-      deps[i] = inputArgs.get(command.getArguments().indexOf(dependency));
-      i += 1;
-    }
-
-    return deps;
-  }
 }
@@ -0,0 +1,31 @@
+package se.hornta.commando;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Default executor for async command handlers. Replaced by a virtual thread per task executor on Java 21, see
+// src/main/java21. Here handlers beyond the pool size wait in the queue instead of starting more threads.
+final class CommandThreads {
+  private static final int MAX_THREADS = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+
+  private CommandThreads() { }
+
+  static ExecutorService newExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      MAX_THREADS,
+      MAX_THREADS,
+      60,
+      TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(),
+      (Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "Commando command");
+        thread.setDaemon(true);
+        return thread;
+      }
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
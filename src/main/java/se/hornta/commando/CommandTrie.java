@@ -0,0 +1,217 @@
+package se.hornta.commando;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+final class CommandTrie {
+  private final Commando commando;
+  private final Node root;
+  private final PermissionIndex permissions;
+
+  private CommandTrie(Commando commando, Node root, PermissionIndex permissions) {
+    this.commando = commando;
+    this.root = root;
+    this.permissions = permissions;
+  }
+
+  static CommandTrie compile(Commando commando, Collection<CarbonCommand> commands) {
+    CommandSet rootSet = new CommandSet();
+    for (CarbonCommand command : commands) {
+      getCommandSet(command, rootSet, 0).setCommand(command);
+    }
+    return new CommandTrie(commando, compile(rootSet), new PermissionIndex(commands, commando::getPermissionCacheMillis));
+  }
+
+  private static CommandSet getCommandSet(CarbonCommand command, CommandSet set, int step) {
+    String part = command.getPart(step);
+    if (part == null) {
+      return set;
+    }
+
+    CommandSet child = set.getCommandSet(part);
+    if (child == null) {
+      child = set.createChildCommand(part);
+    }
+    return command.isLastStep(step) ? child : getCommandSet(command, child, step + 1);
+  }
+
+  PermissionIndex getPermissions() {
+    return permissions;
+  }
+
+  private static Node compile(CommandSet set) {
+    Map<String, CommandSet> childCommands = new TreeMap<>(set.getChildCommands());
+    String[] names = new String[childCommands.size()];
+    Node[] children = new Node[childCommands.size()];
+
+    int i = 0;
+    for (Map.Entry<String, CommandSet> entry : childCommands.entrySet()) {
+      names[i] = entry.getKey();
+      children[i] = compile(entry.getValue());
+      i += 1;
+    }
+
+    return new Node(set.getCommand(), names, children);
+  }
+
+  void dispatch(CommandSender sender, ArgumentCursor args) {
+    Node node = root.resolve(args);
+    CarbonCommand command = node.command;
+
+    if (command != null && command.hasHandler()) {
+      new CommandProcessor(commando, command, sender, args);
+      return;
+    }
+
+    List<CarbonCommand> commands = new ArrayList<>();
+    node.collectCommands(commands, args.isEmpty() ? "" : args.get(0));
+    // example
+    // "/foo bar" command exist
+    // /foo doesn't exist
+    // types "/foo" -> missing command
+    // types "/foo baz" -> missing command
+    BiConsumer<CommandSender, List<CarbonCommand>> handler = commando.getMissingCommandHandler();
+    if(handler != null) {
+      handler.accept(sender, commands);
+    }
+  }
+
+  void autoComplete(CommandSender sender, ArgumentCursor args, CompletionCollector collector) {
+    Runnable argumentCompletion = prepareAutoComplete(sender, args, collector);
+    if (argumentCompletion != null) {
+      argumentCompletion.run();
+    }
+  }
+
+  // Collects the matching command names and checks every permission on the calling thread. The returned argument
+  // completion, if any, only calls argument handlers.
+  Runnable prepareAutoComplete(CommandSender sender, ArgumentCursor args, CompletionCollector collector) {
+    return prepareAutoComplete(root, sender, args, collector);
+  }
+
+  private Runnable prepareAutoComplete(Node node, CommandSender sender, ArgumentCursor args, CompletionCollector collector) {
+    if (args.isEmpty()) {
+      return null;
+    }
+
+    int childIndex = node.indexOf(args.get(0));
+    if (childIndex < 0) {
+      if (node.command != null && node.command.mayHaveArguments()) {
+        Runnable argumentCompletion;
+        try {
+          argumentCompletion = node.command.prepareAutoComplete(sender, args, commando.getCompletionSessions(), commando.getCompletionMemo(), collector);
+        } catch (Exception e) {
+          Bukkit.getLogger().log(Level.SEVERE, e.getMessage(), e);
+          return null;
+        }
+        if (argumentCompletion == null) {
+          return null;
+        }
+
+        return () -> {
+          try {
+            argumentCompletion.run();
+          } catch (Exception e) {
+            Bukkit.getLogger().log(Level.SEVERE, e.getMessage(), e);
+          }
+        };
+      }
+
+      if(args.size() > 1) {
+        return null;
+      }
+    }
+
+    if(childIndex < 0 || args.last().equalsIgnoreCase(node.names[childIndex])) {
+      String prefix = args.get(0);
+      for (int i = 0; i < node.names.length; i++) {
+        CarbonCommand childCommand = node.children[i].command;
+        if (childCommand != null && !permissions.hasAny(sender, childCommand)) {
+          continue;
+        }
+
+        if (node.names[i].regionMatches(true, 0, prefix, 0, prefix.length()) && !collector.accept(node.names[i])) {
+          break;
+        }
+      }
+    }
+
+    if(childIndex >= 0) {
+      args.advance();
+      return prepareAutoComplete(node.children[childIndex], sender, args, collector);
+    }
+    return null;
+  }
+
+  private static final class Node {
+    private final CarbonCommand command;
+    private final String[] names;
+    private final Node[] children;
+
+    private Node(CarbonCommand command, String[] names, Node[] children) {
+      this.command = command;
+      this.names = names;
+      this.children = children;
+    }
+
+    Node resolve(ArgumentCursor path) {
+      Node node = this;
+      while (!path.isEmpty()) {
+        int index = node.indexOf(path.get(0));
+        if (index < 0) {
+          break;
+        }
+        node = node.children[index];
+        path.advance();
+      }
+      return node;
+    }
+
+    private int indexOf(String name) {
+      int low = 0;
+      int high = names.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compareIgnoreCase(names[mid], name);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    private void collectCommands(List<CarbonCommand> collector, String startsWith) {
+      for (int i = 0; i < names.length; i++) {
+        if (!startsWith.isEmpty() && !names[i].startsWith(startsWith)) {
+          continue;
+        }
+
+        Node child = children[i];
+        if (child.command != null) {
+          collector.add(child.command);
+          child.collectCommands(collector, "");
+        }
+      }
+    }
+
+    private static int compareIgnoreCase(String lowerKey, String input) {
+      int length = Math.min(lowerKey.length(), input.length());
+      for (int i = 0; i < length; i++) {
+        char a = lowerKey.charAt(i);
+        char b = Character.toLowerCase(input.charAt(i));
+        if (a != b) {
+          return a - b;
+        }
+      }
+      return lowerKey.length() - input.length();
+    }
+  }
+}
@@ -1,39 +1,267 @@
 package se.hornta.commando;
 
+import se.hornta.commando.completers.IArgumentHandler;
+import se.hornta.commando.completers.OfflinePlayerIndex;
+import se.hornta.commando.completers.OnlinePlayerIndex;
+import se.hornta.commando.completers.WorldIndex;
+import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class Commando {
-  private final CommandSet rootCommandSet;
-  private final List<CarbonCommand> allCommands = new ArrayList<>();
   private BiConsumer<CommandSender, CarbonCommand> noPermissionHandler;
   private BiConsumer<CommandSender, CarbonCommand> missingArgumentHandler;
   private BiConsumer<CommandSender, List<CarbonCommand>> missingCommandHandler;
+  private BiConsumer<CommandSender, CarbonCommand> timeoutHandler;
   private Consumer<ValidationResult> validationHandler;
+  private final AsyncCompletion asyncCompletion = new AsyncCompletion();
+  private final AsyncExecution asyncExecution = new AsyncExecution();
+  private final CompletionGuard completionGuard = new CompletionGuard(asyncCompletion::getExecutor, asyncExecution::getMainThreadExecutorOrNull);
+  private final CompletionSessions completionSessions = new CompletionSessions(completionGuard);
+  private final CompletionMemo completionMemo = new CompletionMemo(completionGuard);
+  private volatile long permissionCacheMillis = 5000;
+  private volatile int completionLimit = Integer.MAX_VALUE;
+  private volatile CompletionOrder completionOrder = CompletionOrder.NATURAL;
+  private final Object registryLock = new Object();
+  private volatile Registry registry = new Registry(Collections.emptyList());
+  private volatile boolean frozen;
 
-  public Commando() {
-    rootCommandSet = new CommandSet(this);
-  }
+  public Commando() { }
 
   public CarbonCommand addCommand(String parts) {
+    String[] commandParts = parts.split(" ");
     CarbonCommand command = new CarbonCommand();
-    command.setParts(parts.split(" "));
+    command.setParts(commandParts);
+
+    synchronized (registryLock) {
+      if (frozen) {
+        throw new Error("Commands can not be added after freeze() has been called");
+      }
 
-    allCommands.add(command);
-    CommandSet commandSet = getCommandSet(command, rootCommandSet);
-    commandSet.setCommand(command);
+      List<CarbonCommand> commands = registry.commands;
+      for (CarbonCommand existing : commands) {
+        if (existing.hasParts(commandParts, true)) {
+          throw new Error("A command with the parts \"" + parts + "\" already exists");
+        }
+      }
+
+      List<CarbonCommand> newCommands = new ArrayList<>(commands);
+      newCommands.add(command);
+      registry = new Registry(Collections.unmodifiableList(newCommands));
+    }
 
     return command;
   }
 
+  // Removes the command with these parts together with every command below it, e.g. "arena" also removes "arena join"
+  public boolean removeCommand(String parts) {
+    String[] prefix = parts.split(" ");
+
+    synchronized (registryLock) {
+      if (frozen) {
+        throw new Error("Commands can not be removed after freeze() has been called");
+      }
+
+      List<CarbonCommand> commands = registry.commands;
+      List<CarbonCommand> newCommands = new ArrayList<>(commands.size());
+      List<CarbonCommand> removedCommands = new ArrayList<>();
+      for (CarbonCommand command : commands) {
+        if (command.hasParts(prefix, false)) {
+          removedCommands.add(command);
+        } else {
+          newCommands.add(command);
+        }
+      }
+
+      if (removedCommands.isEmpty()) {
+        return false;
+      }
+
+      registry = new Registry(Collections.unmodifiableList(newCommands));
+      invalidateCompletions(removedCommands, newCommands);
+      return true;
+    }
+  }
+
+  // Drops the cached completions of removed commands, handlers shared with a remaining command keep their state
+  private void invalidateCompletions(List<CarbonCommand> removedCommands, List<CarbonCommand> remainingCommands) {
+    Set<IArgumentHandler> remainingHandlers = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (CarbonCommand command : remainingCommands) {
+      for (ICarbonArgument argument : command.getArguments()) {
+        remainingHandlers.add(argument.getHandler());
+      }
+    }
+
+    for (CarbonCommand command : removedCommands) {
+      completionSessions.invalidate(command);
+      for (ICarbonArgument argument : command.getArguments()) {
+        completionMemo.invalidate(argument);
+        if (argument.getHandler() != null && !remainingHandlers.contains(argument.getHandler())) {
+          completionGuard.invalidate(argument.getHandler());
+        }
+      }
+    }
+  }
+
+  public void freeze() {
+    synchronized (registryLock) {
+      if (frozen) {
+        throw new Error("freeze() has already been called");
+      }
+
+      getTrie();
+      frozen = true;
+    }
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  public void registerListeners(Plugin plugin) {
+    OnlinePlayerIndex.track(Bukkit.getOnlinePlayers());
+    WorldIndex.track(Bukkit.getWorlds());
+    OfflinePlayerIndex.configure(new File(plugin.getDataFolder(), "offline-players"));
+    if (!asyncExecution.hasMainThreadExecutor()) {
+      asyncExecution.setMainThreadExecutor((Runnable task) -> Bukkit.getScheduler().runTask(plugin, task));
+    }
+    Bukkit.getPluginManager().registerEvents(new CommandoListener(this, plugin), plugin);
+  }
+
+  // Permission checks for help texts are cached per sender for this long, invalidatePermissions() drops them sooner
+  public void setPermissionCacheMillis(long millis) {
+    if (millis < 0) {
+      throw new Error("Permission cache time cannot be negative");
+    }
+
+    permissionCacheMillis = millis;
+  }
+
+  long getPermissionCacheMillis() {
+    return permissionCacheMillis;
+  }
+
+  public void invalidatePermissions(CommandSender sender) {
+    CommandTrie compiled = registry.trie;
+    if (compiled != null) {
+      compiled.getPermissions().invalidate(sender);
+    }
+  }
+
+  public void invalidatePermissions() {
+    CommandTrie compiled = registry.trie;
+    if (compiled != null) {
+      compiled.getPermissions().invalidateAll();
+    }
+  }
+
+  public void setCompletionLimit(int limit) {
+    if (limit < 1) {
+      throw new Error("Completion limit must be at least 1");
+    }
+
+    completionLimit = limit;
+  }
+
+  public void setCompletionOrder(CompletionOrder order) {
+    if (order == null) {
+      throw new Error("Completion order cannot be null");
+    }
+
+    completionOrder = order;
+  }
+
+  public void setCompletionExecutor(Executor executor) {
+    if (executor == null) {
+      throw new Error("Completion executor cannot be null");
+    }
+
+    asyncCompletion.setExecutor(executor);
+  }
+
+  public void setCompletionDeadline(long millis) {
+    if (millis < 1) {
+      throw new Error("Completion deadline must be at least 1 millisecond");
+    }
+
+    asyncCompletion.setDeadline(millis);
+  }
+
+  public void setCommandExecutor(Executor executor) {
+    if (executor == null) {
+      throw new Error("Command executor cannot be null");
+    }
+
+    asyncExecution.setExecutor(executor);
+  }
+
+  // Used by async commands to get back to the server thread, set by registerListeners() unless already set
+  public void setMainThreadExecutor(Executor executor) {
+    if (executor == null) {
+      throw new Error("Main thread executor cannot be null");
+    }
+
+    asyncExecution.setMainThreadExecutor(executor);
+  }
+
+  // Cancels async and future handlers that haven't finished
+  public void cancelRunningCommands() {
+    asyncExecution.cancelAll();
+  }
+
+  // Cancels running commands and stops the threads Commando started, done when the plugin given to
+  // registerListeners() disables
+  public void shutdown() {
+    asyncExecution.shutdown();
+    asyncCompletion.shutdown();
+    OfflinePlayerIndex.close();
+  }
+
+  // Drops cached completions, e.g. after the data behind an argument registered with cacheCompletions() changed
+  public void invalidateCompletionCache(ICarbonArgument argument) {
+    completionMemo.invalidate(argument);
+  }
+
+  public void invalidateCompletionCache() {
+    completionMemo.invalidateAll();
+  }
+
+  // Gives every argument handler without a budget of its own this budget, by default handlers aren't timed
+  public void setCompletionBudget(long millis) {
+    if (millis < 1) {
+      throw new Error("Completion budget must be at least 1 millisecond");
+    }
+
+    completionGuard.setDefaultBudget(millis);
+  }
+
+  public void setCompletionBudget(IArgumentHandler handler, long millis) {
+    if (millis < 1) {
+      throw new Error("Completion budget must be at least 1 millisecond");
+    }
+
+    completionGuard.setBudget(handler, millis);
+  }
+
+  public Map<IArgumentHandler, Long> getCompletionBudgetViolations() {
+    return completionGuard.getViolations();
+  }
+
   public void setNoPermissionHandler(BiConsumer<CommandSender, CarbonCommand> handler) {
     noPermissionHandler = handler;
   }
@@ -46,6 +274,10 @@ public class Commando {
     missingCommandHandler = handler;
   }
 
+  public void setTimeoutHandler(BiConsumer<CommandSender, CarbonCommand> handler) {
+    timeoutHandler = handler;
+  }
+
   public void handleValidation(Consumer<ValidationResult> validationHandler) {
     if(this.validationHandler != null) {
       throw new Error("Validation handler already set");
@@ -70,65 +302,95 @@ public class Commando {
     return missingCommandHandler;
   }
 
-  private static CommandSet getCommandSet(CarbonCommand command, CommandSet set) {
-    return getCommandSet(command, set, 0);
+  public BiConsumer<CommandSender, CarbonCommand> getTimeoutHandler() {
+    return timeoutHandler;
   }
 
-  private static CommandSet getCommandSet(CarbonCommand command, CommandSet set, Integer step) {
-    String part = command.getPart(step);
+  CompletionSessions getCompletionSessions() {
+    return completionSessions;
+  }
 
-    if (part == null) {
-      return set;
-    }
+  CompletionMemo getCompletionMemo() {
+    return completionMemo;
+  }
 
-    if (set.hasChildCommand(part)) {
-      if (command.isLastStep(step)) {
-        set.getCommandSet(part);
-        return set.getCommandSet(part);
-      }
-      return getCommandSet(command, set.getCommandSet(part), step + 1);
-    } else {
-      return getCommandSet(command, set.createChildCommand(part), step + 1);
-    }
+  AsyncExecution getAsyncExecution() {
+    return asyncExecution;
+  }
+
+  void forgetCompletions(CommandSender sender) {
+    completionSessions.invalidate(sender);
+    completionMemo.invalidateGroup(sender);
+    completionGuard.invalidateGroup(sender);
+    asyncCompletion.forget(sender);
   }
 
-  private void dispatch(CommandSender sender, List<String> args) {
-    rootCommandSet.dispatch(sender, args);
+  // Compiled lazily so a command can still be configured after addCommand(). Threads racing to compile the same
+  // registry build equal tries, so readers don't need the lock.
+  private CommandTrie getTrie() {
+    Registry current = registry;
+    CommandTrie compiled = current.trie;
+    if (compiled == null) {
+      compiled = CommandTrie.compile(this, current.commands);
+      current.trie = compiled;
+    }
+    return compiled;
   }
 
   public Boolean handleCommand(CommandSender sender, Command command, String[] args) {
-    ArrayList<String> arguments = new ArrayList<>(Arrays.asList(args));
-    arguments.add(0, command.getName());
-    dispatch(sender, arguments);
+    getTrie().dispatch(sender, new ArgumentCursor(command.getName(), args));
     return true;
   }
 
   public List<String> handleAutoComplete(CommandSender sender, Command command, String[] args) {
-    List<String> arguments = new ArrayList<>(Arrays.asList(args));
-    arguments.add(0, command.getName());
+    return autoComplete(sender, new ArgumentCursor(command.getName(), args));
+  }
+
+  // Runs the argument handlers on the completion executor, falling back to the sender's last known suggestions
+  // when they don't finish within the completion deadline. Command and argument permissions are checked on the
+  // calling thread first, so call this from the server thread or an event that allows permission lookups, like
+  // Paper's AsyncTabCompleteEvent.
+  public CompletableFuture<List<String>> handleAutoCompleteAsync(CommandSender sender, Command command, String[] args) {
+    String[] line = new String[args.length + 1];
+    line[0] = command.getName();
+    System.arraycopy(args, 0, line, 1, args.length);
+
+    CompletionCollector collector = new CompletionCollector(completionLimit, completionOrder);
+    Runnable argumentCompletion = getTrie().prepareAutoComplete(sender, new ArgumentCursor(command.getName(), args), collector);
+    return asyncCompletion.complete(sender, line, (String[] input) -> {
+      if (argumentCompletion != null) {
+        argumentCompletion.run();
+      }
+      return collector.toList();
+    });
+  }
 
-    return rootCommandSet.autoComplete(sender, arguments).stream().sorted(String::compareTo).collect(Collectors.toList());
+  private List<String> autoComplete(CommandSender sender, ArgumentCursor args) {
+    CompletionCollector collector = new CompletionCollector(completionLimit, completionOrder);
+    getTrie().autoComplete(sender, args, collector);
+    return collector.toList();
   }
 
   public List<String> getHelpTexts() {
     return getHelpTexts(null);
   }
 
+  // Permissions are cached for setPermissionCacheMillis(), call invalidatePermissions() when a permission
+  // plugin changes a player's grants and the help texts must reflect it right away
   public List<String> getHelpTexts(Player player) {
-    return allCommands.stream()
-      .filter((CarbonCommand command) -> {
-        if(player == null) {
-          return true;
-        }
-
-        for(String permission : command.getPermissions()) {
-          if(!player.hasPermission(permission)) {
-            return false;
-          }
-        }
-        return true;
-      })
+    PermissionIndex permissions = player == null ? null : getTrie().getPermissions();
+    return registry.commands.stream()
+      .filter((CarbonCommand command) -> permissions == null || permissions.hasAll(player, command))
       .map(CarbonCommand::getHelpText)
       .collect(Collectors.toList());
   }
+
+  private static final class Registry {
+    private final List<CarbonCommand> commands;
+    private volatile CommandTrie trie;
+
+    private Registry(List<CarbonCommand> commands) {
+      this.commands = commands;
+    }
+  }
 }
@@ -0,0 +1,60 @@
+package se.hornta.commando;
+
+import se.hornta.commando.completers.OfflinePlayerIndex;
+import se.hornta.commando.completers.OnlinePlayerIndex;
+import se.hornta.commando.completers.WorldIndex;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+
+public final class CommandoListener implements Listener {
+  private final Commando commando;
+  private final Plugin plugin;
+
+  CommandoListener(Commando commando, Plugin plugin) {
+    this.commando = commando;
+    this.plugin = plugin;
+  }
+
+  @EventHandler(priority = EventPriority.LOWEST)
+  public void onPlayerJoin(PlayerJoinEvent event) {
+    OnlinePlayerIndex.add(event.getPlayer().getName());
+    OfflinePlayerIndex.add(event.getPlayer().getName());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onPlayerQuit(PlayerQuitEvent event) {
+    commando.invalidatePermissions(event.getPlayer());
+    commando.forgetCompletions(event.getPlayer());
+    OnlinePlayerIndex.remove(event.getPlayer().getName());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+    commando.invalidatePermissions(event.getPlayer());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onWorldLoad(WorldLoadEvent event) {
+    WorldIndex.add(event.getWorld());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onWorldUnload(WorldUnloadEvent event) {
+    WorldIndex.remove(event.getWorld());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onPluginDisable(PluginDisableEvent event) {
+    if (event.getPlugin() == plugin) {
+      commando.shutdown();
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package se.hornta.commando;
+
+import se.hornta.commando.completers.IArgumentHandler;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// One completer instance per argument type, shared by every argument and command using that type. Instances are
+// created on first use from the registered supplier, which defaults to the completer built into the type.
+public final class CompleterRegistry {
+  private static final Object lock = new Object();
+  private static final Map<CarbonArgumentType, Supplier<? extends IArgumentHandler>> suppliers = new EnumMap<>(CarbonArgumentType.class);
+  private static volatile Map<CarbonArgumentType, IArgumentHandler> completers = new EnumMap<>(CarbonArgumentType.class);
+
+  private CompleterRegistry() { }
+
+  // Arguments built before a call to register() keep the completer they were built with.
+  public static void register(CarbonArgumentType type, Supplier<? extends IArgumentHandler> supplier) {
+    if (!type.isCompletable()) {
+      throw new Error("Argument type " + type + " is not completable");
+    }
+
+    synchronized (lock) {
+      suppliers.put(type, supplier);
+      Map<CarbonArgumentType, IArgumentHandler> newCompleters = new EnumMap<>(completers);
+      newCompleters.remove(type);
+      completers = newCompleters;
+    }
+  }
+
+  public static IArgumentHandler get(CarbonArgumentType type) {
+    IArgumentHandler completer = completers.get(type);
+    if (completer != null || !type.isCompletable()) {
+      return completer;
+    }
+
+    synchronized (lock) {
+      completer = completers.get(type);
+      if (completer != null) {
+        return completer;
+      }
+
+      Supplier<? extends IArgumentHandler> supplier = suppliers.getOrDefault(type, type.getDefaultCompleter());
+      completer = supplier.get();
+      if (completer == null) {
+        throw new Error("Completer supplier for " + type + " returned null");
+      }
+
+      Map<CarbonArgumentType, IArgumentHandler> newCompleters = new EnumMap<>(completers);
+      newCompleters.put(type, completer);
+      completers = newCompleters;
+      return completer;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package se.hornta.commando;
+
+import se.hornta.commando.completers.ICompletionSink;
+
+import java.util.*;
+
+// Keeps the first `limit` candidates in completion order without sorting everything that is offered. Ordered
+// results are kept in a heap whose head is the largest candidate kept so far.
+final class CompletionCollector implements ICompletionSink {
+  private final int limit;
+  private final CompletionOrder order;
+  private final Comparator<String> comparator;
+  private final Set<String> kept = new LinkedHashSet<>();
+  private final PriorityQueue<String> heap;
+
+  CompletionCollector(int limit, CompletionOrder order) {
+    this.limit = limit;
+    this.order = order;
+    this.comparator = order.getComparator();
+    this.heap = comparator == null ? null : new PriorityQueue<>(Math.min(limit, 64), comparator.reversed());
+  }
+
+  @Override
+  public boolean accept(String candidate) {
+    return offer(candidate, false);
+  }
+
+  // A sink for a producer that emits candidates in the given order, which lets it be stopped early
+  ICompletionSink sortedBy(CompletionOrder sourceOrder) {
+    if (comparator == null || sourceOrder != order) {
+      return this;
+    }
+    return (String candidate) -> offer(candidate, true);
+  }
+
+  private boolean offer(String candidate, boolean sorted) {
+    if (heap == null) {
+      if (kept.size() < limit) {
+        kept.add(candidate);
+      }
+      return kept.size() < limit;
+    }
+
+    if (kept.contains(candidate)) {
+      return true;
+    }
+
+    if (heap.size() < limit) {
+      heap.add(candidate);
+      kept.add(candidate);
+      return true;
+    }
+
+    if (comparator.compare(candidate, heap.peek()) >= 0) {
+      // everything a sorted producer emits after this would be rejected as well
+      return !sorted;
+    }
+
+    kept.remove(heap.poll());
+    heap.add(candidate);
+    kept.add(candidate);
+    return true;
+  }
+
+  List<String> toList() {
+    List<String> result = new ArrayList<>(kept);
+    if (comparator != null) {
+      result.sort(comparator);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,232 @@
+package se.hornta.commando;
+
+import se.hornta.commando.completers.IArgumentHandler;
+import se.hornta.commando.completers.ICompletionSink;
+import se.hornta.commando.completers.IStreamingArgumentHandler;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+// Times calls to argument handlers that have been given a budget. A handler that goes over its budget is marked as
+// slow. Instead of calling it, its last successful result for the same completion group, input and previous arguments
+// is used, or the result for the longest cached prefix of the input, while the handler is asked again as the sender
+// that asked, on the refresh executor if it is thread-safe and on the main thread otherwise. When nothing is cached it is still called directly. It is trusted again once a
+// call stays within the budget.
+final class CompletionGuard {
+  private static final int MAX_RESULTS_PER_HANDLER = 128;
+
+  private final Supplier<Executor> refreshExecutor;
+  private final Supplier<Executor> mainThreadExecutor;
+  private final Map<IArgumentHandler, HandlerState> states = new ConcurrentHashMap<>();
+  private final Map<IArgumentHandler, Long> budgets = new ConcurrentHashMap<>();
+  // 0 means that only handlers with a budget of their own are timed
+  private volatile long defaultBudgetNanos;
+
+  CompletionGuard(Supplier<Executor> refreshExecutor, Supplier<Executor> mainThreadExecutor) {
+    this.refreshExecutor = refreshExecutor;
+    this.mainThreadExecutor = mainThreadExecutor;
+  }
+
+  void setDefaultBudget(long millis) {
+    defaultBudgetNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  void setBudget(IArgumentHandler handler, long millis) {
+    budgets.put(handler, TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  Map<IArgumentHandler, Long> getViolations() {
+    Map<IArgumentHandler, Long> violations = new HashMap<>();
+    for (Map.Entry<IArgumentHandler, HandlerState> entry : states.entrySet()) {
+      violations.put(entry.getKey(), entry.getValue().violations.get());
+    }
+    return violations;
+  }
+
+  // Results are only shared between senders of the same group, see ICarbonArgument.getCompletionGroup()
+  void produce(IArgumentHandler handler, CommandSender sender, Object group, String input, String[] prevArgs, ICompletionSink sink) {
+    long budget = budgets.getOrDefault(handler, defaultBudgetNanos);
+    if (budget == 0) {
+      call(handler, sender, input, prevArgs, sink);
+      return;
+    }
+
+    HandlerState state = states.computeIfAbsent(handler, (IArgumentHandler key) -> new HandlerState());
+    ResultKey key = new ResultKey(group, input, prevArgs);
+
+    if (state.slow) {
+      String[] stale = state.get(key);
+      boolean exact = stale != null;
+      if (!exact && handler.isPrefixMonotonic()) {
+        stale = state.getLongestPrefix(key);
+      }
+
+      // with nothing to serve, the handler is asked directly below
+      if (stale != null) {
+        refresh(state, handler, sender, key, budget);
+        for (String candidate : stale) {
+          if ((exact || candidate.regionMatches(true, 0, input, 0, input.length())) && !sink.accept(candidate)) {
+            return;
+          }
+        }
+        return;
+      }
+    }
+
+    CandidateRecorder recorder = new CandidateRecorder(sink, CompletionSessions.MAX_CANDIDATES);
+    long start = System.nanoTime();
+    call(handler, sender, input, prevArgs, recorder);
+    long elapsed = System.nanoTime() - start;
+
+    if (recorder.isComplete()) {
+      state.store(key, recorder.toArray());
+    }
+
+    if (elapsed > budget) {
+      state.violations.incrementAndGet();
+      state.slow = true;
+    } else {
+      state.slow = false;
+    }
+  }
+
+  void invalidateGroup(Object group) {
+    for (HandlerState state : states.values()) {
+      state.invalidateGroup(group);
+    }
+  }
+
+  void invalidate(IArgumentHandler handler) {
+    states.remove(handler);
+  }
+
+  private void refresh(HandlerState state, IArgumentHandler handler, CommandSender sender, ResultKey key, long budget) {
+    if (!state.refreshing.add(key)) {
+      return;
+    }
+
+    // handlers are only called off the main thread when they say that's safe
+    Executor executor = handler.isThreadSafe() ? refreshExecutor.get() : mainThreadExecutor.get();
+    if (executor == null) {
+      // nowhere to refresh, the next request calls the handler directly instead
+      state.refreshing.remove(key);
+      state.slow = false;
+      return;
+    }
+
+    try {
+      executor.execute(() -> {
+        try {
+          CandidateRecorder recorder = new CandidateRecorder((String candidate) -> true, CompletionSessions.MAX_CANDIDATES);
+          long start = System.nanoTime();
+          call(handler, sender, key.input, key.prevArgs, recorder);
+          long elapsed = System.nanoTime() - start;
+
+          if (recorder.isComplete()) {
+            state.store(key, recorder.toArray());
+          }
+
+          if (elapsed > budget) {
+            state.violations.incrementAndGet();
+          } else {
+            state.slow = false;
+          }
+        } catch (Exception e) {
+          Bukkit.getLogger().log(Level.SEVERE, e.getMessage(), e);
+        } finally {
+          state.refreshing.remove(key);
+        }
+      });
+    } catch (RuntimeException e) {
+      // rejected, or the Bukkit scheduler refusing tasks of a disabled plugin
+      state.refreshing.remove(key);
+    }
+  }
+
+  private static void call(IArgumentHandler handler, CommandSender sender, String input, String[] prevArgs, ICompletionSink sink) {
+    if (handler instanceof IStreamingArgumentHandler) {
+      ((IStreamingArgumentHandler) handler).streamItems(sender, input, prevArgs, sink);
+    } else {
+      sink.acceptAll(handler.getItems(sender, input, prevArgs));
+    }
+  }
+
+  private static final class HandlerState {
+    private final AtomicLong violations = new AtomicLong();
+    private final Set<ResultKey> refreshing = ConcurrentHashMap.newKeySet();
+    private final Map<ResultKey, String[]> results = new LinkedHashMap<ResultKey, String[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ResultKey, String[]> eldest) {
+        return size() > MAX_RESULTS_PER_HANDLER;
+      }
+    };
+    private volatile boolean slow;
+
+    void store(ResultKey key, String[] candidates) {
+      synchronized (results) {
+        results.put(key, candidates);
+      }
+    }
+
+    void invalidateGroup(Object group) {
+      synchronized (results) {
+        results.keySet().removeIf((ResultKey key) -> Objects.equals(key.group, group));
+      }
+    }
+
+    String[] get(ResultKey key) {
+      synchronized (results) {
+        return results.get(key);
+      }
+    }
+
+    String[] getLongestPrefix(ResultKey key) {
+      synchronized (results) {
+        for (int length = key.input.length() - 1; length >= 0; length--) {
+          String[] candidates = results.get(new ResultKey(key.group, key.input.substring(0, length), key.prevArgs));
+          if (candidates != null) {
+            return candidates;
+          }
+        }
+        return null;
+      }
+    }
+  }
+
+  private static final class ResultKey {
+    private final Object group;
+    private final String input;
+    private final String[] prevArgs;
+
+    private ResultKey(Object group, String input, String[] prevArgs) {
+      this.group = group;
+      this.input = input;
+      this.prevArgs = prevArgs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ResultKey)) {
+        return false;
+      }
+
+      ResultKey other = (ResultKey) o;
+      return Objects.equals(group, other.group) && input.equals(other.input) && Arrays.equals(prevArgs, other.prevArgs);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(group, input, Arrays.hashCode(prevArgs));
+    }
+  }
+}
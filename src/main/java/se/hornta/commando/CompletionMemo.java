@@ -0,0 +1,178 @@
+package se.hornta.commando;
+
+import se.hornta.commando.completers.IArgumentHandler;
+import se.hornta.commando.completers.ICompletionSink;
+import se.hornta.commando.completers.IStreamingArgumentHandler;
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+
+// Candidates of arguments that opted in through CarbonArgument.Builder.cacheCompletions(), keyed by the argument,
+// the values of its dependencies and the sender's group. Prefix-monotonic handlers are asked for every candidate
+// once, which then serves each input typed for the same dependency values until the entry expires. Other handlers,
+// and those with too many candidates, are cached per typed input.
+final class CompletionMemo {
+  private static final int MAX_ENTRIES = 1024;
+
+  private final Map<Key, Cached> entries = new LinkedHashMap<Key, Cached>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  private final CompletionGuard guard;
+
+  CompletionMemo(CompletionGuard guard) {
+    this.guard = guard;
+  }
+
+  boolean completeCached(CommandSender sender, ICarbonArgument argument, IArgumentHandler handler, String input, String[] prevArgs, CompletionCollector collector) {
+    Object group = argument.getCompletionGroup(sender);
+    long now = System.currentTimeMillis();
+
+    Cached entry;
+    synchronized (entries) {
+      entry = lookup(new Key(argument, group, handler.isPrefixMonotonic() ? "" : input, prevArgs), now);
+      if (entry != null && entry.candidates == null) {
+        entry = lookup(new Key(argument, group, input, prevArgs), now);
+      }
+    }
+
+    if (entry == null || entry.candidates == null) {
+      return false;
+    }
+
+    feed(handler, entry.candidates, input, collector);
+    return true;
+  }
+
+  // Asks the handler once and caches the result if it ran to the end. When every candidate of a prefix-monotonic
+  // handler doesn't fit, that is remembered for as long as an entry would be cached, and results are cached per
+  // typed input instead.
+  void completeAndCache(CommandSender sender, ICarbonArgument argument, IArgumentHandler handler, String input, String[] prevArgs, CompletionCollector collector) {
+    Object group = argument.getCompletionGroup(sender);
+    long now = System.currentTimeMillis();
+    long expiresAt = now + argument.getCompletionCacheMillis();
+
+    if (handler.isPrefixMonotonic()) {
+      Key everything = new Key(argument, group, "", prevArgs);
+      Cached entry;
+      synchronized (entries) {
+        entry = lookup(everything, now);
+      }
+
+      if (entry == null) {
+        CandidateRecorder recorder = new CandidateRecorder((String candidate) -> true, CompletionSessions.MAX_CANDIDATES);
+        guard.produce(handler, sender, group, "", prevArgs, recorder);
+        if (recorder.isComplete()) {
+          String[] candidates = recorder.toArray();
+          store(everything, new Cached(candidates, expiresAt));
+          feed(handler, candidates, input, collector);
+          return;
+        }
+        store(everything, new Cached(null, expiresAt));
+      }
+    }
+
+    CandidateRecorder recorder = new CandidateRecorder(collector.sortedBy(getOrder(handler)), CompletionSessions.MAX_CANDIDATES);
+    guard.produce(handler, sender, group, input, prevArgs, recorder);
+    if (recorder.isComplete()) {
+      store(new Key(argument, group, input, prevArgs), new Cached(recorder.toArray(), expiresAt));
+    }
+  }
+
+  void invalidate(ICarbonArgument argument) {
+    synchronized (entries) {
+      entries.keySet().removeIf((Key key) -> key.argument == argument);
+    }
+  }
+
+  void invalidateGroup(Object group) {
+    synchronized (entries) {
+      entries.keySet().removeIf((Key key) -> Objects.equals(key.group, group));
+    }
+  }
+
+  void invalidateAll() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  // must be called while holding the lock on entries
+  private Cached lookup(Key key, long now) {
+    Cached entry = entries.get(key);
+    if (entry != null && entry.expiresAt <= now) {
+      entries.remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  private void store(Key key, Cached entry) {
+    synchronized (entries) {
+      entries.put(key, entry);
+    }
+  }
+
+  private static CompletionOrder getOrder(IArgumentHandler handler) {
+    return handler instanceof IStreamingArgumentHandler ? ((IStreamingArgumentHandler) handler).getOrder() : CompletionOrder.NONE;
+  }
+
+  private static void feed(IArgumentHandler handler, String[] candidates, String input, CompletionCollector collector) {
+    ICompletionSink sink = collector.sortedBy(getOrder(handler));
+    boolean filter = handler.isPrefixMonotonic();
+    for (String candidate : candidates) {
+      if ((!filter || candidate.regionMatches(true, 0, input, 0, input.length())) && !sink.accept(candidate)) {
+        return;
+      }
+    }
+  }
+
+  // candidates is null when they didn't all fit
+  private static final class Cached {
+    private final String[] candidates;
+    private final long expiresAt;
+
+    private Cached(String[] candidates, long expiresAt) {
+      this.candidates = candidates;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static final class Key {
+    private final ICarbonArgument argument;
+    private final Object group;
+    private final String input;
+    private final String[] prevArgs;
+
+    private Key(ICarbonArgument argument, Object group, String input, String[] prevArgs) {
+      this.argument = argument;
+      this.group = group;
+      this.input = input;
+      this.prevArgs = prevArgs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+
+      Key other = (Key) o;
+      return argument == other.argument &&
+        Objects.equals(group, other.group) &&
+        input.equals(other.input) &&
+        Arrays.equals(prevArgs, other.prevArgs);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(argument), group, input, Arrays.hashCode(prevArgs));
+    }
+  }
+}
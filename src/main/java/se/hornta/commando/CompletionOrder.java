@@ -0,0 +1,21 @@
+package se.hornta.commando;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+public enum CompletionOrder {
+  NATURAL(Comparator.naturalOrder()),
+  CASE_INSENSITIVE(Comparator.comparing((String candidate) -> candidate.toLowerCase(Locale.ENGLISH)).thenComparing(Comparator.naturalOrder())),
+  // candidates are kept in the order they are produced
+  NONE(null);
+
+  private final Comparator<String> comparator;
+
+  CompletionOrder(Comparator<String> comparator) {
+    this.comparator = comparator;
+  }
+
+  public Comparator<String> getComparator() {
+    return comparator;
+  }
+}
@@ -0,0 +1,120 @@
+package se.hornta.commando;
+
+import se.hornta.commando.completers.IArgumentHandler;
+import se.hornta.commando.completers.ICompletionSink;
+import se.hornta.commando.completers.IStreamingArgumentHandler;
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+
+// Remembers the candidates of each sender's last argument completion. When the next request is for the same
+// argument and its input only extends the previous input, the previous candidates are narrowed down instead of
+// asking the handler again.
+final class CompletionSessions {
+  private static final int MAX_SESSIONS = 256;
+  static final int MAX_CANDIDATES = 2048;
+  private static final long EXPIRE_AFTER_MILLIS = 10000;
+
+  private final Map<CommandSender, Session> sessions = new LinkedHashMap<CommandSender, Session>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CommandSender, Session> eldest) {
+      return size() > MAX_SESSIONS;
+    }
+  };
+
+  private final CompletionGuard guard;
+
+  CompletionSessions(CompletionGuard guard) {
+    this.guard = guard;
+  }
+
+  void complete(CommandSender sender, Object group, CarbonCommand command, int argumentIndex, IArgumentHandler handler, String input, String[] prevArgs, CompletionCollector collector) {
+    CompletionOrder order = handler instanceof IStreamingArgumentHandler ? ((IStreamingArgumentHandler) handler).getOrder() : CompletionOrder.NONE;
+    ICompletionSink sink = collector.sortedBy(order);
+
+    if (!handler.isPrefixMonotonic()) {
+      guard.produce(handler, sender, group, input, prevArgs, sink);
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    Session session;
+    synchronized (sessions) {
+      session = sessions.get(sender);
+    }
+
+    if (session != null && session.extendedBy(command, argumentIndex, input, prevArgs, now)) {
+      CandidateRecorder recorder = new CandidateRecorder(sink, MAX_CANDIDATES);
+      for (String candidate : session.candidates) {
+        if (candidate.regionMatches(true, 0, input, 0, input.length()) && !recorder.accept(candidate)) {
+          break;
+        }
+      }
+
+      // a narrowing cut short by the result limit is incomplete, the previous session still covers this input
+      if (recorder.isComplete()) {
+        remember(sender, new Session(command, argumentIndex, input, prevArgs, recorder.toArray(), session.createdAt));
+      }
+      return;
+    }
+
+    CandidateRecorder recorder = new CandidateRecorder(sink, MAX_CANDIDATES);
+    guard.produce(handler, sender, group, input, prevArgs, recorder);
+    if (recorder.isComplete()) {
+      remember(sender, new Session(command, argumentIndex, input, prevArgs, recorder.toArray(), now));
+    } else {
+      invalidate(sender);
+    }
+  }
+
+  void invalidate(CommandSender sender) {
+    synchronized (sessions) {
+      sessions.remove(sender);
+    }
+  }
+
+  void invalidate(CarbonCommand command) {
+    synchronized (sessions) {
+      sessions.values().removeIf((Session session) -> session.command == command);
+    }
+  }
+
+  void invalidateAll() {
+    synchronized (sessions) {
+      sessions.clear();
+    }
+  }
+
+  private void remember(CommandSender sender, Session session) {
+    synchronized (sessions) {
+      sessions.put(sender, session);
+    }
+  }
+
+  private static final class Session {
+    private final CarbonCommand command;
+    private final int argumentIndex;
+    private final String input;
+    private final String[] prevArgs;
+    private final String[] candidates;
+    private final long createdAt;
+
+    private Session(CarbonCommand command, int argumentIndex, String input, String[] prevArgs, String[] candidates, long createdAt) {
+      this.command = command;
+      this.argumentIndex = argumentIndex;
+      this.input = input;
+      this.prevArgs = prevArgs;
+      this.candidates = candidates;
+      this.createdAt = createdAt;
+    }
+
+    boolean extendedBy(CarbonCommand command, int argumentIndex, String input, String[] prevArgs, long now) {
+      return this.command == command &&
+        this.argumentIndex == argumentIndex &&
+        now - createdAt < EXPIRE_AFTER_MILLIS &&
+        input.length() >= this.input.length() &&
+        input.regionMatches(true, 0, this.input, 0, this.input.length()) &&
+        Arrays.equals(this.prevArgs, prevArgs);
+    }
+  }
+}
@@ -1,190 +1,143 @@
 package se.hornta.commando;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public final class DateUtil {
   private static final int maxYears = 1000;
 
   private DateUtil() {}
 
-  private static final Pattern TIME_PATTERN = Pattern.compile(
-    Stream
-      .of("y", "mo", "w", "d", "h", "m", "s")
-      .map(i -> "(?:([0-9]+)" + i + "[a-z]*[,]?)?")
-      .collect(Collectors.joining()), Pattern.CASE_INSENSITIVE);
   private static final int MAX_YEARS = 100000;
+  private static final long MIN_SECONDS_IN_MAX_YEARS = 365L * maxYears * 24 * 60 * 60;
+
+  private static final ChronoUnit[] DIFF_UNITS = new ChronoUnit[] {
+    ChronoUnit.YEARS,
+    ChronoUnit.MONTHS,
+    ChronoUnit.DAYS,
+    ChronoUnit.HOURS,
+    ChronoUnit.MINUTES,
+    ChronoUnit.SECONDS
+  };
+
+  private static final String[] DIFF_NAMES = new String[] {
+    "<year>",
+    "<years>",
+    "<month>",
+    "<months>",
+    "<day>",
+    "<days>",
+    "<hour>",
+    "<hours>",
+    "<minute>",
+    "<minutes>",
+    "<second>",
+    "<seconds>"
+  };
 
   public static long parseDuration(String time, boolean future) {
-    return parseDuration(new GregorianCalendar(), time, future);
+    DurationSpec spec = DurationSpec.parse(time);
+    if (spec == null) {
+      throw new IllegalArgumentException();
+    }
+    return applyDuration(spec, System.currentTimeMillis(), ZoneId.systemDefault(), future);
   }
 
   public static long parseDuration(Calendar from, String time, boolean future) throws IllegalArgumentException {
-    Matcher matcher = TIME_PATTERN.matcher(time);
-    int years = 0;
-    int months = 0;
-    int weeks = 0;
-    int days = 0;
-    int hours = 0;
-    int minutes = 0;
-    int seconds = 0;
-
-    boolean found = false;
-    while (matcher.find()) {
-      if (matcher.group() == null || matcher.group().isEmpty()) {
-        continue;
-      }
-      for (int i = 0; i < matcher.groupCount(); i++) {
-        if (matcher.group(i) != null && !matcher.group(i).isEmpty()) {
-          found = true;
-          break;
-        }
-      }
-      if (found) {
-        if (matcher.group(1) != null && !matcher.group(1).isEmpty()) {
-          years = Integer.parseInt(matcher.group(1));
-        }
-        if (matcher.group(2) != null && !matcher.group(2).isEmpty()) {
-          months = Integer.parseInt(matcher.group(2));
-        }
-        if (matcher.group(3) != null && !matcher.group(3).isEmpty()) {
-          weeks = Integer.parseInt(matcher.group(3));
-        }
-        if (matcher.group(4) != null && !matcher.group(4).isEmpty()) {
-          days = Integer.parseInt(matcher.group(4));
-        }
-        if (matcher.group(5) != null && !matcher.group(5).isEmpty()) {
-          hours = Integer.parseInt(matcher.group(5));
-        }
-        if (matcher.group(6) != null && !matcher.group(6).isEmpty()) {
-          minutes = Integer.parseInt(matcher.group(6));
-        }
-        if (matcher.group(7) != null && !matcher.group(7).isEmpty()) {
-          seconds = Integer.parseInt(matcher.group(7));
-        }
-        break;
-      }
-    }
-
-    if (!found) {
+    DurationSpec spec = DurationSpec.parse(time);
+    if (spec == null) {
       throw new IllegalArgumentException();
     }
+    return applyDuration(spec, from.getTimeInMillis(), from.getTimeZone().toZoneId(), future);
+  }
+
+  static long applyDuration(DurationSpec spec, long fromMillis, ZoneId zone, boolean future) {
+    int sign = future ? 1 : -1;
 
-    Calendar c = (Calendar) from.clone();
-    if (years > 0) {
-      if (years > MAX_YEARS) {
-        years = MAX_YEARS;
+    if (!spec.hasCalendarUnits() && (zone.getRules().isFixedOffset() || spec.getWeeks() == 0 && spec.getDays() == 0)) {
+      long seconds = (spec.getWeeks() * 7L + spec.getDays()) * 24 * 60 * 60
+        + spec.getHours() * 60L * 60
+        + spec.getMinutes() * 60L
+        + spec.getSeconds();
+
+      if (!future || seconds < MIN_SECONDS_IN_MAX_YEARS) {
+        return (fromMillis + sign * seconds * 1000) / 1000;
       }
-      c.add(Calendar.YEAR, years * (future ? 1 : -1));
-    }
-    if (months > 0) {
-      c.add(Calendar.MONTH, months * (future ? 1 : -1));
-    }
-    if (weeks > 0) {
-      c.add(Calendar.WEEK_OF_YEAR, weeks * (future ? 1 : -1));
-    }
-    if (days > 0) {
-      c.add(Calendar.DAY_OF_MONTH, days * (future ? 1 : -1));
-    }
-    if (hours > 0) {
-      c.add(Calendar.HOUR_OF_DAY, hours * (future ? 1 : -1));
-    }
-    if (minutes > 0) {
-      c.add(Calendar.MINUTE, minutes * (future ? 1 : -1));
-    }
-    if (seconds > 0) {
-      c.add(Calendar.SECOND, seconds * (future ? 1 : -1));
     }
 
-    Calendar max = (Calendar) from.clone();
-    max.add(Calendar.YEAR, maxYears);
+    ZonedDateTime from = Instant.ofEpochMilli(fromMillis).atZone(zone);
+    ZonedDateTime to = from
+      .plusYears((long) Math.min(spec.getYears(), MAX_YEARS) * sign)
+      .plusMonths((long) spec.getMonths() * sign)
+      .plusWeeks((long) spec.getWeeks() * sign)
+      .plusDays((long) spec.getDays() * sign)
+      .plusHours((long) spec.getHours() * sign)
+      .plusMinutes((long) spec.getMinutes() * sign)
+      .plusSeconds((long) spec.getSeconds() * sign);
 
-    if (c.after(max)) {
-      c = max;
+    ZonedDateTime max = from.plusYears(maxYears);
+    if (to.isAfter(max)) {
+      to = max;
     }
-    return c.getTimeInMillis() / 1000;
+    return to.toInstant().toEpochMilli() / 1000;
   }
 
-  static int dateDiff(int type, Calendar fromDate, Calendar toDate, boolean future) {
-    int year = Calendar.YEAR;
+  public static String formatDateDiff(long ts) {
+    return formatDateDiff(new StringBuilder(), ts).toString();
+  }
 
-    int fromYear = fromDate.get(year);
-    int toYear = toDate.get(year);
-    if (Math.abs(fromYear - toYear) > maxYears) {
-      toDate.set(year, fromYear + (future ? maxYears : -maxYears));
-    }
+  public static String formatDateDiff(Calendar fromDate, Calendar toDate) {
+    return formatDateDiff(new StringBuilder(), fromDate, toDate).toString();
+  }
 
-    int diff = 0;
-    long savedDate = fromDate.getTimeInMillis();
-    while ((future && !fromDate.after(toDate)) || (!future && !fromDate.before(toDate))) {
-      savedDate = fromDate.getTimeInMillis();
-      fromDate.add(type, future ? 1 : -1);
-      diff++;
-    }
-    diff--;
-    fromDate.setTimeInMillis(savedDate);
-    return diff;
+  public static StringBuilder formatDateDiff(StringBuilder builder, long ts) {
+    ZoneId zone = ZoneId.systemDefault();
+    return formatDateDiff(
+      builder,
+      Instant.ofEpochMilli(System.currentTimeMillis()).atZone(zone),
+      Instant.ofEpochMilli(ts).atZone(zone)
+    );
   }
 
-  public static String formatDateDiff(long ts) {
-    Calendar c = new GregorianCalendar();
-    c.setTimeInMillis(ts);
-    Calendar now = new GregorianCalendar();
-    return formatDateDiff(now, c);
+  public static StringBuilder formatDateDiff(StringBuilder builder, Calendar fromDate, Calendar toDate) {
+    return formatDateDiff(
+      builder,
+      Instant.ofEpochMilli(fromDate.getTimeInMillis()).atZone(fromDate.getTimeZone().toZoneId()),
+      Instant.ofEpochMilli(toDate.getTimeInMillis()).atZone(toDate.getTimeZone().toZoneId())
+    );
   }
 
-  public static String formatDateDiff(Calendar fromDate, Calendar toDate) {
-    boolean future = false;
-    if (toDate.equals(fromDate)) {
-      return "<now>";
+  private static StringBuilder formatDateDiff(StringBuilder builder, ZonedDateTime fromDate, ZonedDateTime toDate) {
+    if (toDate.isEqual(fromDate)) {
+      return builder.append("<now>");
     }
-    if (toDate.after(fromDate)) {
-      future = true;
+    boolean future = toDate.isAfter(fromDate);
+
+    if (Math.abs(fromDate.getYear() - toDate.getYear()) > maxYears) {
+      toDate = toDate.withYear(fromDate.getYear() + (future ? maxYears : -maxYears));
     }
-    StringBuilder sb = new StringBuilder();
-
-    int[] types = new int[] {
-      Calendar.YEAR,
-      Calendar.MONTH,
-      Calendar.DAY_OF_MONTH,
-      Calendar.HOUR_OF_DAY,
-      Calendar.MINUTE,
-      Calendar.SECOND
-    };
-
-    String[] names = new String[] {
-      "<year>",
-      "<years>",
-      "<month>",
-      "<months>",
-      "<day>",
-      "<days>",
-      "<hour>",
-      "<hours>",
-      "<minute>",
-      "<minutes>",
-      "<second>",
-      "<seconds>"
-    };
 
+    int start = builder.length();
     int accuracy = 0;
-    for (int i = 0; i < types.length; i++) {
-      if (accuracy == 2) {
-        break;
-      }
-      int diff = dateDiff(types[i], fromDate, toDate, future);
+    for (int i = 0; i < DIFF_UNITS.length && accuracy < 2; i++) {
+      long diff = Math.abs(fromDate.until(toDate, DIFF_UNITS[i]));
       if (diff > 0) {
         accuracy++;
-        sb.append(" ").append(diff).append(" ").append(names[i * 2 + (diff > 1 ? 1 : 0)]);
+        fromDate = future ? fromDate.plus(diff, DIFF_UNITS[i]) : fromDate.minus(diff, DIFF_UNITS[i]);
+
+        if (builder.length() > start) {
+          builder.append(' ');
+        }
+        builder.append(diff).append(' ').append(DIFF_NAMES[i * 2 + (diff > 1 ? 1 : 0)]);
       }
     }
-    if (sb.length() == 0) {
-      return "<now>";
+
+    if (builder.length() == start) {
+      builder.append("<now>");
     }
-    return sb.toString().trim();
+    return builder;
   }
 }
@@ -0,0 +1,125 @@
+package se.hornta.commando;
+
+final class DurationSpec {
+  private static final String[] UNITS = new String[] { "y", "mo", "w", "d", "h", "m", "s" };
+
+  private final int years;
+  private final int months;
+  private final int weeks;
+  private final int days;
+  private final int hours;
+  private final int minutes;
+  private final int seconds;
+
+  private DurationSpec(int[] values) {
+    years = values[0];
+    months = values[1];
+    weeks = values[2];
+    days = values[3];
+    hours = values[4];
+    minutes = values[5];
+    seconds = values[6];
+  }
+
+  int getYears() {
+    return years;
+  }
+
+  int getMonths() {
+    return months;
+  }
+
+  int getWeeks() {
+    return weeks;
+  }
+
+  int getDays() {
+    return days;
+  }
+
+  int getHours() {
+    return hours;
+  }
+
+  int getMinutes() {
+    return minutes;
+  }
+
+  int getSeconds() {
+    return seconds;
+  }
+
+  boolean hasCalendarUnits() {
+    return years > 0 || months > 0;
+  }
+
+  // Same grammar as the former pattern "(?:([0-9]+)y[a-z]*[,]?)?(?:([0-9]+)mo[a-z]*[,]?)?..." applied with
+  // Matcher.find(): the first non-empty match wins and anything around it is ignored.
+  static DurationSpec parse(CharSequence input) {
+    int length = input.length();
+    int[] values = null;
+
+    for (int start = 0; start < length; start++) {
+      int position = start;
+      for (int unit = 0; unit < UNITS.length; unit++) {
+        int digitsEnd = position;
+        while (digitsEnd < length && isDigit(input.charAt(digitsEnd))) {
+          digitsEnd += 1;
+        }
+
+        if (digitsEnd == position || !unitMatches(input, digitsEnd, UNITS[unit])) {
+          continue;
+        }
+
+        if (values == null) {
+          values = new int[UNITS.length];
+        }
+
+        int value = 0;
+        for (int i = position; i < digitsEnd; i++) {
+          int digit = input.charAt(i) - '0';
+          if (value > (Integer.MAX_VALUE - digit) / 10) {
+            return null;
+          }
+          value = value * 10 + digit;
+        }
+        values[unit] = value;
+
+        position = digitsEnd + UNITS[unit].length();
+        while (position < length && isLetter(input.charAt(position))) {
+          position += 1;
+        }
+        if (position < length && input.charAt(position) == ',') {
+          position += 1;
+        }
+      }
+
+      if (position > start) {
+        return new DurationSpec(values);
+      }
+    }
+
+    return null;
+  }
+
+  private static boolean unitMatches(CharSequence input, int offset, String unit) {
+    if (offset + unit.length() > input.length()) {
+      return false;
+    }
+
+    for (int i = 0; i < unit.length(); i++) {
+      if ((input.charAt(offset + i) | 0x20) != unit.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+}
@@ -0,0 +1,7 @@
+package se.hornta.commando;
+
+// Registered through CarbonCommand.withAsyncHandler() and always runs on the command executor
+@FunctionalInterface
+public interface IAsyncCommandHandler {
+  void handle(CommandContext context, ParsedArguments args) throws Exception;
+}
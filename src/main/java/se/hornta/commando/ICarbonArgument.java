@@ -1,6 +1,7 @@
 package se.hornta.commando;
 
 import se.hornta.commando.completers.IArgumentHandler;
+import org.bukkit.command.CommandSender;
 
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -20,4 +21,11 @@ public interface ICarbonArgument {
   Set<ICarbonArgument> getDependencies();
   boolean isCatchRemaining();
   String getPermission();
+  // 0 when completions of this argument aren't cached
+  default long getCompletionCacheMillis() {
+    return 0;
+  }
+  default Object getCompletionGroup(CommandSender sender) {
+    return sender;
+  }
 }
@@ -0,0 +1,10 @@
+package se.hornta.commando;
+
+import java.util.concurrent.CompletableFuture;
+
+// Registered through CarbonCommand.withFutureHandler(). Called on the dispatching thread, the command is running
+// until the returned future completes.
+@FunctionalInterface
+public interface IFutureCommandHandler {
+  CompletableFuture<?> handle(CommandContext context, ParsedArguments args);
+}
@@ -0,0 +1,8 @@
+package se.hornta.commando;
+
+import org.bukkit.command.CommandSender;
+
+@FunctionalInterface
+public interface ITypedCommandHandler {
+  void handle(CommandSender sender, ParsedArguments args);
+}
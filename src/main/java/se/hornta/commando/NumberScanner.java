@@ -0,0 +1,185 @@
+package se.hornta.commando;
+
+final class NumberScanner {
+  enum Status {
+    OK,
+    MALFORMED,
+    OVERFLOW
+  }
+
+  private static final long MAX_EXACT_MANTISSA = (1L << 53) - 1;
+  private static final int MAX_EXACT_EXPONENT = 22;
+  private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_EXPONENT + 1];
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private int intValue;
+  private double doubleValue;
+
+  int getInt() {
+    return intValue;
+  }
+
+  double getDouble() {
+    return doubleValue;
+  }
+
+  Status scanInt(CharSequence input) {
+    intValue = 0;
+    int length = input.length();
+    int i = 0;
+    boolean negative = false;
+
+    if (i < length && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+      negative = input.charAt(i) == '-';
+      i += 1;
+    }
+
+    if (i == length) {
+      return Status.MALFORMED;
+    }
+
+    // accumulate negatively so that Integer.MIN_VALUE is representable
+    long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+    long value = 0;
+    boolean overflow = false;
+    for (; i < length; i++) {
+      int digit = input.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return parseIntSlow(input);
+      }
+
+      if (!overflow) {
+        value = value * 10 - digit;
+        overflow = value < limit;
+      }
+    }
+
+    if (overflow) {
+      intValue = negative ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+      return Status.OVERFLOW;
+    }
+
+    intValue = (int) (negative ? value : -value);
+    return Status.OK;
+  }
+
+  Status scanDouble(CharSequence input) {
+    doubleValue = 0;
+    int length = input.length();
+    int i = 0;
+    boolean negative = false;
+
+    if (i < length && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+      negative = input.charAt(i) == '-';
+      i += 1;
+    }
+
+    long mantissa = 0;
+    int exponent = 0;
+    int digits = 0;
+    boolean exact = true;
+
+    for (; i < length && isDigit(input.charAt(i)); i++) {
+      digits += 1;
+      if (mantissa <= (MAX_EXACT_MANTISSA - 9) / 10) {
+        mantissa = mantissa * 10 + (input.charAt(i) - '0');
+      } else {
+        exact = false;
+      }
+    }
+
+    if (i < length && input.charAt(i) == '.') {
+      i += 1;
+      for (; i < length && isDigit(input.charAt(i)); i++) {
+        digits += 1;
+        if (mantissa <= (MAX_EXACT_MANTISSA - 9) / 10) {
+          mantissa = mantissa * 10 + (input.charAt(i) - '0');
+          exponent -= 1;
+        } else {
+          exact = false;
+        }
+      }
+    }
+
+    if (digits == 0) {
+      return parseDoubleSlow(input);
+    }
+
+    if (i < length && (input.charAt(i) == 'e' || input.charAt(i) == 'E')) {
+      i += 1;
+      boolean negativeExponent = false;
+      if (i < length && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+        negativeExponent = input.charAt(i) == '-';
+        i += 1;
+      }
+
+      if (i == length) {
+        return parseDoubleSlow(input);
+      }
+
+      int exponentValue = 0;
+      for (; i < length && isDigit(input.charAt(i)); i++) {
+        if (exponentValue < 100000) {
+          exponentValue = exponentValue * 10 + (input.charAt(i) - '0');
+        }
+      }
+      exponent += negativeExponent ? -exponentValue : exponentValue;
+    }
+
+    if (i != length) {
+      return parseDoubleSlow(input);
+    }
+
+    double value;
+    if (exact && exponent >= -MAX_EXACT_EXPONENT && exponent <= MAX_EXACT_EXPONENT) {
+      value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+      value = negative ? -value : value;
+    } else {
+      // the input is known to be well formed here, so this can not throw
+      value = Double.parseDouble(input.toString());
+    }
+
+    doubleValue = value;
+    return Status.OK;
+  }
+
+  // Integer.parseInt also accepts non-ASCII digits, so those inputs go through it
+  private Status parseIntSlow(CharSequence input) {
+    for (int i = 0; i < input.length(); i++) {
+      if (input.charAt(i) > 127) {
+        try {
+          intValue = Integer.parseInt(input.toString());
+          return Status.OK;
+        } catch (NumberFormatException e) {
+          return Status.MALFORMED;
+        }
+      }
+    }
+    return Status.MALFORMED;
+  }
+
+  // Double.parseDouble also accepts NaN, Infinity, hex, type suffixes and surrounding whitespace
+  private Status parseDoubleSlow(CharSequence input) {
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (c <= ' ' || "NIxXpPfFdD".indexOf(c) != -1) {
+        try {
+          doubleValue = Double.parseDouble(input.toString());
+          return Status.OK;
+        } catch (NumberFormatException e) {
+          return Status.MALFORMED;
+        }
+      }
+    }
+    return Status.MALFORMED;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -0,0 +1,114 @@
+package se.hornta.commando;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+
+public final class ParsedArguments {
+  private final CarbonArgumentType[] types;
+  private final String[] values;
+  private final int[] ints;
+  private final double[] doubles;
+  private final long[] durations;
+  private final Object[] objects;
+  private int size;
+  private int typedArgs;
+
+  ParsedArguments(int capacity) {
+    types = new CarbonArgumentType[capacity];
+    values = new String[capacity];
+    ints = new int[capacity];
+    doubles = new double[capacity];
+    durations = new long[capacity];
+    objects = new Object[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getTypedArgs() {
+    return typedArgs;
+  }
+
+  public String[] getValues() {
+    return Arrays.copyOf(values, size);
+  }
+
+  public String getString(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public int getInt(int index) {
+    checkType(index, CarbonArgumentType.INTEGER);
+    return ints[index];
+  }
+
+  public double getDouble(int index) {
+    checkIndex(index);
+    if (types[index] == CarbonArgumentType.INTEGER) {
+      return ints[index];
+    }
+    checkType(index, CarbonArgumentType.NUMBER);
+    return doubles[index];
+  }
+
+  public long getDurationSeconds(int index) {
+    checkType(index, CarbonArgumentType.DURATION);
+    return durations[index];
+  }
+
+  public Player getPlayer(int index) {
+    checkType(index, CarbonArgumentType.ONLINE_PLAYER);
+    return (Player) objects[index];
+  }
+
+  public World getWorld(int index) {
+    checkIndex(index);
+    if (types[index] != CarbonArgumentType.WORLD_NORMAL) {
+      checkType(index, CarbonArgumentType.WORLD);
+    }
+    return (World) objects[index];
+  }
+
+  void set(int index, CarbonArgumentType type, String value) {
+    types[index] = type;
+    values[index] = value;
+    size = Math.max(size, index + 1);
+  }
+
+  void setInt(int index, int value) {
+    ints[index] = value;
+  }
+
+  void setDouble(int index, double value) {
+    doubles[index] = value;
+  }
+
+  void setDurationSeconds(int index, long value) {
+    durations[index] = value;
+  }
+
+  void setObject(int index, Object value) {
+    objects[index] = value;
+  }
+
+  void setTypedArgs(int typedArgs) {
+    this.typedArgs = typedArgs;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private void checkType(int index, CarbonArgumentType type) {
+    checkIndex(index);
+    if (types[index] != type) {
+      throw new Error("Argument at index " + index + " is of type " + types[index] + ", not " + type);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package se.hornta.commando;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+final class PermissionIndex {
+  private final String[] nodes;
+  private final Map<CarbonCommand, int[]> commandNodes = new IdentityHashMap<>();
+  private final Map<CommandSender, Snapshot> snapshots = Collections.synchronizedMap(new WeakHashMap<>());
+  private final LongSupplier cacheMillis;
+
+  PermissionIndex(Collection<CarbonCommand> commands, LongSupplier cacheMillis) {
+    this.cacheMillis = cacheMillis;
+    Map<String, Integer> ids = new HashMap<>();
+    for (CarbonCommand command : commands) {
+      List<String> permissions = command.getPermissions();
+      int[] commandIds = new int[permissions.size()];
+      for (int i = 0; i < commandIds.length; i++) {
+        String permission = permissions.get(i);
+        Integer id = ids.get(permission);
+        if (id == null) {
+          id = ids.size();
+          ids.put(permission, id);
+        }
+        commandIds[i] = id;
+      }
+      commandNodes.put(command, commandIds);
+    }
+
+    nodes = new String[ids.size()];
+    for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+      nodes[entry.getValue()] = entry.getKey();
+    }
+  }
+
+  int size() {
+    return nodes.length;
+  }
+
+  boolean hasAny(CommandSender sender, CarbonCommand command) {
+    int[] ids = getNodes(command);
+    if (ids == null) {
+      return command.checkPermissions(sender);
+    }
+    if (ids.length == 0) {
+      return true;
+    }
+
+    Snapshot snapshot = getSnapshot(sender);
+    for (int id : ids) {
+      if (snapshot.has(sender, id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean hasAll(CommandSender sender, CarbonCommand command) {
+    int[] ids = getNodes(command);
+    if (ids == null) {
+      for (String permission : command.getPermissions()) {
+        if (!sender.hasPermission(permission)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (ids.length == 0) {
+      return true;
+    }
+
+    Snapshot snapshot = getSnapshot(sender);
+    for (int id : ids) {
+      if (!snapshot.has(sender, id)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void invalidate(CommandSender sender) {
+    snapshots.remove(sender);
+  }
+
+  void invalidateAll() {
+    snapshots.clear();
+  }
+
+  private int[] getNodes(CarbonCommand command) {
+    // permissions added to a command after the index was built are checked live
+    int[] ids = commandNodes.get(command);
+    if (ids == null || ids.length != command.getPermissions().size()) {
+      return null;
+    }
+    return ids;
+  }
+
+  private Snapshot getSnapshot(CommandSender sender) {
+    long now = System.currentTimeMillis();
+    return snapshots.compute(sender, (CommandSender key, Snapshot snapshot) ->
+      snapshot == null || snapshot.expiresAt <= now ? new Snapshot(now + cacheMillis.getAsLong()) : snapshot
+    );
+  }
+
+  // Permissions are resolved the first time they are asked for and then kept until the snapshot expires or
+  // is invalidated, so a sender that never sees a node never pays for its lookup. The snapshot must not
+  // reference the sender, it's the key of a weak map.
+  private final class Snapshot {
+    private final long expiresAt;
+    private final BitSet known = new BitSet(nodes.length);
+    private final BitSet granted = new BitSet(nodes.length);
+
+    private Snapshot(long expiresAt) {
+      this.expiresAt = expiresAt;
+    }
+
+    synchronized boolean has(CommandSender sender, int id) {
+      if (!known.get(id)) {
+        granted.set(id, sender.hasPermission(nodes[id]));
+        known.set(id);
+      }
+      return granted.get(id);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package se.hornta.commando;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class PermissionTemplate {
+  private final String permission;
+  private final String[] literals;
+  private final int[] slots;
+  private final String[] placeholders;
+  private final int literalLength;
+
+  private PermissionTemplate(String permission, String[] literals, int[] slots, String[] placeholders) {
+    this.permission = permission;
+    this.literals = literals;
+    this.slots = slots;
+    this.placeholders = placeholders;
+
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    this.literalLength = length;
+  }
+
+  // Splits "foo.[0].bar" into the literals "foo." and ".bar" around an argument slot. Placeholders that can
+  // never match an argument index, like "[01]", stay part of the literal text.
+  static PermissionTemplate compile(String permission) {
+    List<String> literals = new ArrayList<>();
+    List<Integer> slots = new ArrayList<>();
+    List<String> placeholders = new ArrayList<>();
+
+    int literalStart = 0;
+    int i = 0;
+    while (i < permission.length()) {
+      int end = placeholderEnd(permission, i);
+      if (end < 0) {
+        i += 1;
+        continue;
+      }
+
+      int slot = parseSlot(permission, i + 1, end - 1);
+      if (slot >= 0) {
+        literals.add(permission.substring(literalStart, i));
+        slots.add(slot);
+        placeholders.add(permission.substring(i, end));
+        literalStart = end;
+      }
+      i = end;
+    }
+    literals.add(permission.substring(literalStart));
+
+    int[] slotArray = new int[slots.size()];
+    for (int j = 0; j < slotArray.length; j++) {
+      slotArray[j] = slots.get(j);
+    }
+
+    return new PermissionTemplate(
+      permission,
+      literals.toArray(new String[0]),
+      slotArray,
+      placeholders.toArray(new String[0])
+    );
+  }
+
+  private static int placeholderEnd(String permission, int start) {
+    if (permission.charAt(start) != '[') {
+      return -1;
+    }
+
+    int i = start + 1;
+    while (i < permission.length() && permission.charAt(i) >= '0' && permission.charAt(i) <= '9') {
+      i += 1;
+    }
+
+    if (i == start + 1 || i == permission.length() || permission.charAt(i) != ']') {
+      return -1;
+    }
+    return i + 1;
+  }
+
+  private static int parseSlot(String permission, int from, int to) {
+    if (to - from > 1 && permission.charAt(from) == '0') {
+      return -1;
+    }
+
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = permission.charAt(i) - '0';
+      if (value > (Integer.MAX_VALUE - digit) / 10) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  String getPermission() {
+    return permission;
+  }
+
+  String resolve(ArgumentCursor args) {
+    if (slots.length == 0 || args.isEmpty()) {
+      return permission;
+    }
+
+    int length = literalLength;
+    for (int i = 0; i < slots.length; i++) {
+      length += slots[i] < args.size() ? args.get(slots[i]).length() : placeholders[i].length();
+    }
+
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < slots.length; i++) {
+      builder.append(literals[i]);
+      builder.append(slots[i] < args.size() ? args.get(slots[i]) : placeholders[i]);
+    }
+    builder.append(literals[slots.length]);
+
+    return builder.toString();
+  }
+}
@@ -3,37 +3,36 @@ package se.hornta.commando;
 import java.util.*;
 
 public class Util {
-  private static Map<Class<?>, Set<Class<?>>> memoizedInterfaces = new HashMap<>();
-
-  public static Set<Class<?>> getSuperInterfaces(Class<?> clazz) {
-    if (memoizedInterfaces.containsKey(clazz)) {
-      return memoizedInterfaces.get(clazz);
-    }
-
-    Queue<Class<?>> queue = new LinkedList<Class<?>>();
-    Set<Class<?>> types = new HashSet<>();
-    queue.add(clazz);
-    types.add(clazz);
-
-    while (!queue.isEmpty()) {
-      Class<?> curr = queue.poll();
-      Class<?>[] supers = curr.getInterfaces();
-      for (Class<?> next : supers) {
+  private static final ClassValue<Set<Class<?>>> superInterfaces = new ClassValue<Set<Class<?>>>() {
+    @Override
+    protected Set<Class<?>> computeValue(Class<?> clazz) {
+      Queue<Class<?>> queue = new LinkedList<Class<?>>();
+      Set<Class<?>> types = new LinkedHashSet<>();
+      queue.add(clazz);
+      types.add(clazz);
+
+      while (!queue.isEmpty()) {
+        Class<?> curr = queue.poll();
+        Class<?>[] supers = curr.getInterfaces();
+        for (Class<?> next : supers) {
+          if (next != null && !types.contains(next)) {
+            types.add(next);
+            queue.add(next);
+          }
+        }
+        Class<?> next = curr.getSuperclass();
         if (next != null && !types.contains(next)) {
-          types.add(next);
           queue.add(next);
+          types.add(next);
         }
       }
-      Class<?> next = curr.getSuperclass();
-      if (next != null && !types.contains(next)) {
-        queue.add(next);
-        types.add(next);
-      }
-    }
 
-    memoizedInterfaces.put(clazz, types);
+      return Collections.unmodifiableSet(types);
+    }
+  };
 
-    return types;
+  // The class itself followed by its supertypes, breadth first
+  public static Set<Class<?>> getSuperInterfaces(Class<?> clazz) {
+    return superInterfaces.get(clazz);
   }
 }
-
@@ -9,6 +9,7 @@ public class ValidationResult {
   private final CommandSender commandSender;
   private final String value;
   private final String[] prevArgs;
+  private final Throwable cause;
 
   ValidationResult(ValidationStatus status, CarbonCommand command, ICarbonArgument argument, CommandSender commandSender, String value, String[] prevArgs) {
     this.status = status;
@@ -17,6 +18,17 @@ public class ValidationResult {
     this.commandSender = commandSender;
     this.value = value;
     this.prevArgs = prevArgs;
+    this.cause = null;
+  }
+
+  ValidationResult(CarbonCommand command, CommandSender commandSender, Throwable cause) {
+    this.status = ValidationStatus.ERR_HANDLER_FAILED;
+    this.command = command;
+    this.argument = null;
+    this.commandSender = commandSender;
+    this.value = null;
+    this.prevArgs = new String[0];
+    this.cause = cause;
   }
 
   public String[] getPrevArgs() {
@@ -42,4 +54,8 @@ public class ValidationResult {
   public String getValue() {
     return value;
   }
+
+  public Throwable getCause() {
+    return cause;
+  }
 }
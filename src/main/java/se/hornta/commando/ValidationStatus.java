@@ -7,5 +7,7 @@ public enum ValidationStatus {
   ERR_MIN_LENGTH,
   ERR_MAX_LENGTH,
   ERR_PATTERN,
-  ERR_OTHER
+  ERR_OTHER,
+  // the handler of an async command threw or could not be scheduled, see ValidationResult.getCause()
+  ERR_HANDLER_FAILED
 }
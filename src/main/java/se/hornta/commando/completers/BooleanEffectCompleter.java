@@ -23,8 +23,24 @@ public class BooleanEffectCompleter implements IArgumentHandler {
       .collect(Collectors.toCollection(LinkedHashSet::new));
   }
 
+  @Override
+  public boolean isPrefixMonotonic() {
+    return true;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
   @Override
   public boolean test(Set<String> items, String argument) {
     return argument.contains(argument);
   }
+
+  @Override
+  public boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+    // same outcome as test(), which lets any input through
+    return true;
+  }
 }
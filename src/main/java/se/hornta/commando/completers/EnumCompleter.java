@@ -0,0 +1,62 @@
+package se.hornta.commando.completers;
+
+import se.hornta.commando.CompletionOrder;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class EnumCompleter<E extends Enum<E>> implements IStreamingArgumentHandler {
+  private static final ClassValue<PrefixIndex> indexes = new ClassValue<PrefixIndex>() {
+    @Override
+    protected PrefixIndex computeValue(Class<?> type) {
+      List<String> names = new ArrayList<>();
+      for (Object constant : type.getEnumConstants()) {
+        names.add(((Enum<?>) constant).name());
+      }
+      return PrefixIndex.of(names);
+    }
+  };
+
+  private final PrefixIndex items;
+
+  public EnumCompleter(Class<E> type) {
+    items = indexes.get(type);
+  }
+
+  @Override
+  public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+    return items.startingWith(argument);
+  }
+
+  @Override
+  public boolean isPrefixMonotonic() {
+    return true;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  public void streamItems(CommandSender sender, String argument, String[] prevArgs, ICompletionSink sink) {
+    sink.acceptAll(items.startingWith(argument));
+  }
+
+  @Override
+  public CompletionOrder getOrder() {
+    return CompletionOrder.CASE_INSENSITIVE;
+  }
+
+  @Override
+  public boolean test(Set<String> items, String argument) {
+    return items.contains(argument);
+  }
+
+  @Override
+  public boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+    return items.contains(argument);
+  }
+}
@@ -12,4 +12,17 @@ public interface IArgumentHandler {
   default boolean test(Set<String> items, String argument) {
     return true;
   }
+  // Return true when the items for a longer input are always the items for its prefix that start with it,
+  // ignoring case. Completion then narrows earlier results instead of asking the handler again.
+  default boolean isPrefixMonotonic() {
+    return false;
+  }
+  // Return true when the handler may be called from any thread. Otherwise a completion budget refresh of the
+  // handler runs on the main thread executor, see Commando.setCompletionBudget().
+  default boolean isThreadSafe() {
+    return false;
+  }
+  default boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+    return test(getItems(sender, argument, prevArgs), argument);
+  }
 }
@@ -0,0 +1,16 @@
+package se.hornta.commando.completers;
+
+@FunctionalInterface
+public interface ICompletionSink {
+  // Returns false once no more candidates are wanted, the producer should stop there
+  boolean accept(String candidate);
+
+  default boolean acceptAll(Iterable<String> candidates) {
+    for (String candidate : candidates) {
+      if (!accept(candidate)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
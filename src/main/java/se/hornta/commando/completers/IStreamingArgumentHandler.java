@@ -0,0 +1,27 @@
+package se.hornta.commando.completers;
+
+import se.hornta.commando.CompletionOrder;
+import org.bukkit.command.CommandSender;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public interface IStreamingArgumentHandler extends IArgumentHandler {
+  void streamItems(CommandSender sender, String argument, String[] prevArgs, ICompletionSink sink);
+
+  // The order streamItems() emits candidates in. When it matches the configured completion order, completion
+  // stops asking for more candidates as soon as the result limit is reached.
+  default CompletionOrder getOrder() {
+    return CompletionOrder.NONE;
+  }
+
+  @Override
+  default Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+    Set<String> items = new LinkedHashSet<>();
+    streamItems(sender, argument, prevArgs, (String item) -> {
+      items.add(item);
+      return true;
+    });
+    return items;
+  }
+}
@@ -1,31 +1,7 @@
 package se.hornta.commando.completers;
 
 import org.bukkit.Material;
-import org.bukkit.command.CommandSender;
 
-import java.util.Arrays;
-import java.util.LinkedHashSet;
-import java.util.Locale;
-import java.util.Set;
-import java.util.stream.Collectors;
-
-public class MaterialCompleter implements IArgumentHandler {
-  private final Set<String> items;
-
-  MaterialCompleter() {
-    items = Arrays.stream(Material.values()).map(Enum::name).collect(Collectors.toSet());
-  }
-
-  @Override
-  public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
-    return items
-      .stream()
-      .filter((String name) -> name.toLowerCase(Locale.ENGLISH).startsWith(argument.toLowerCase(Locale.ENGLISH)))
-      .collect(Collectors.toCollection(LinkedHashSet::new));
-  }
-
-  @Override
-  public boolean test(Set<String> items, String argument) {
-    return items.contains(argument);
-  }
+public class MaterialCompleter extends EnumCompleter<Material> {
+  public MaterialCompleter() { super(Material.class); }
 }
@@ -0,0 +1,59 @@
+package se.hornta.commando.completers;
+
+import se.hornta.commando.CompletionOrder;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class OfflinePlayerCompleter implements IStreamingArgumentHandler {
+  @Override
+  public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+    OfflinePlayerIndex index = OfflinePlayerIndex.get();
+    if (index != null) {
+      return index.startingWith(argument);
+    }
+
+    return Arrays.stream(Bukkit.getOfflinePlayers())
+      .map(OfflinePlayer::getName)
+      .filter(Objects::nonNull)
+      .filter((String name) -> name.toLowerCase(Locale.ENGLISH).startsWith(argument.toLowerCase(Locale.ENGLISH)))
+      .sorted(CompletionOrder.CASE_INSENSITIVE.getComparator())
+      .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+
+  @Override
+  public boolean isPrefixMonotonic() {
+    return true;
+  }
+
+  @Override
+  public void streamItems(CommandSender sender, String argument, String[] prevArgs, ICompletionSink sink) {
+    sink.acceptAll(getItems(sender, argument, prevArgs));
+  }
+
+  @Override
+  public CompletionOrder getOrder() {
+    return CompletionOrder.CASE_INSENSITIVE;
+  }
+
+  @Override
+  public boolean test(Set<String> items, String argument) {
+    return items.contains(argument);
+  }
+
+  @Override
+  public boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+    OfflinePlayerIndex index = OfflinePlayerIndex.get();
+    if (index != null) {
+      return index.contains(argument);
+    }
+    return test(getItems(sender, argument, prevArgs), argument);
+  }
+}
@@ -0,0 +1,578 @@
+package se.hornta.commando.completers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Names live in two files. "names.dat" is an append-only list of records, each an unsigned short length
+// followed by that many bytes of UTF-8. "names.<generation>.idx" holds a header and an offset table into names.dat,
+// sorted the same way as PrefixIndex. Both are memory-mapped, so only the pages touched by the binary search
+// are paged in. Names seen after the index was written are kept in a small PrefixIndex and appended to
+// names.dat right away. Once there are enough of them they are merged into an offset table written as the next
+// generation, so a table that is still mapped is never replaced. Older generations are deleted once that's possible.
+public final class OfflinePlayerIndex {
+  private static final int MAGIC = 0x434d4e31;
+  private static final int DATA_HEADER = 4;
+  private static final int INDEX_HEADER = 12;
+  private static final int MAX_NAME_BYTES = 0xffff;
+  private static final int COMPACT_THRESHOLD = 1024;
+  private static final Pattern INDEX_NAME = Pattern.compile("names\\.(\\d+)\\.idx");
+
+  private static final Object lock = new Object();
+  private static ExecutorService executor;
+  private static volatile OfflinePlayerIndex instance;
+
+  private final Path directory;
+  private final Path dataPath;
+  private final Map<String, Integer> pendingOffsets = new HashMap<>();
+  private Path indexPath;
+  private long generation;
+  private long dataLength;
+  private int compactAt = COMPACT_THRESHOLD;
+  private volatile Snapshot snapshot;
+
+  private OfflinePlayerIndex(Path directory) {
+    this.directory = directory;
+    this.dataPath = directory.resolve("names.dat");
+  }
+
+  // Opens the index in the background, creating it from Bukkit.getOfflinePlayers() if it doesn't exist yet.
+  // All file access happens on a single background thread, so appends queued before the index is open are
+  // applied once it is. Must be called on the server thread, the known names are collected here.
+  public static void configure(File directory) {
+    synchronized (lock) {
+      close();
+      if (directory == null) {
+        return;
+      }
+
+      Collection<String> knownNames = getOfflinePlayerNames();
+
+      ExecutorService owner = Executors.newSingleThreadExecutor((Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "Commando offline player index");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor = owner;
+      owner.execute(() -> {
+        try {
+          OfflinePlayerIndex index = open(directory.toPath(), () -> knownNames);
+          synchronized (lock) {
+            if (executor == owner) {
+              instance = index;
+            }
+          }
+        } catch (IOException e) {
+          Bukkit.getLogger().log(Level.SEVERE, "Failed to open offline player index in " + directory, e);
+        }
+      });
+    }
+  }
+
+  // Stops the background thread once queued appends are written, done when the owning plugin disables
+  public static void close() {
+    synchronized (lock) {
+      if (executor != null) {
+        executor.shutdown();
+        executor = null;
+      }
+      instance = null;
+    }
+  }
+
+  // Returns null when no directory has been configured, the index is still being opened or it couldn't be
+  // read. Callers fall back to Bukkit.getOfflinePlayers() in that case.
+  public static OfflinePlayerIndex get() {
+    return instance;
+  }
+
+  // Completes with the index once everything queued before this call has been applied, or with null
+  public static CompletableFuture<OfflinePlayerIndex> whenReady() {
+    synchronized (lock) {
+      if (executor == null) {
+        return CompletableFuture.completedFuture(null);
+      }
+      return CompletableFuture.supplyAsync(() -> instance, executor);
+    }
+  }
+
+  public static void add(String name) {
+    if (name == null) {
+      return;
+    }
+
+    synchronized (lock) {
+      if (executor == null) {
+        return;
+      }
+
+      executor.execute(() -> {
+        OfflinePlayerIndex index = instance;
+        if (index == null) {
+          return;
+        }
+
+        try {
+          index.append(name);
+        } catch (IOException e) {
+          Bukkit.getLogger().log(Level.SEVERE, "Failed to add " + name + " to offline player index", e);
+        }
+      });
+    }
+  }
+
+  static OfflinePlayerIndex open(Path directory, Supplier<Collection<String>> knownNames) throws IOException {
+    Files.createDirectories(directory);
+    OfflinePlayerIndex index = new OfflinePlayerIndex(directory);
+    index.findLatestGeneration();
+
+    if (Files.exists(index.dataPath) && index.indexPath != null) {
+      index.load();
+      // players who joined while the index wasn't open are only known to Bukkit
+      for (String name : knownNames.get()) {
+        index.append(name);
+      }
+    } else {
+      index.create(knownNames.get());
+    }
+
+    return index;
+  }
+
+  private static Collection<String> getOfflinePlayerNames() {
+    List<String> names = new ArrayList<>();
+    for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
+      if (player.getName() != null) {
+        names.add(player.getName());
+      }
+    }
+    return names;
+  }
+
+  public int size() {
+    return snapshot.size();
+  }
+
+  public Set<String> startingWith(String prefix) {
+    return snapshot.startingWith(prefix);
+  }
+
+  public boolean contains(String name) {
+    return snapshot.contains(name);
+  }
+
+  private void create(Collection<String> names) throws IOException {
+    String[] sorted = new LinkedHashSet<>(names).toArray(new String[0]);
+    Arrays.sort(sorted, Comparator.comparing((String name) -> name.toLowerCase(Locale.ENGLISH)).thenComparing(Comparator.naturalOrder()));
+
+    List<Integer> offsets = new ArrayList<>(sorted.length);
+    try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(DATA_HEADER);
+      header.putInt(MAGIC).flip();
+      writeFully(channel, header);
+
+      long position = DATA_HEADER;
+      for (String name : sorted) {
+        ByteBuffer record = encode(name);
+        if (record == null) {
+          continue;
+        }
+        offsets.add((int) position);
+        position += record.remaining();
+        writeFully(channel, record);
+      }
+      dataLength = position;
+    }
+
+    int[] offsetArray = new int[offsets.size()];
+    for (int i = 0; i < offsetArray.length; i++) {
+      offsetArray[i] = offsets.get(i);
+    }
+    writeIndex(offsetArray);
+    snapshot = new Snapshot(mapData(), mapIndex(), PrefixIndex.of(Collections.emptyList()));
+  }
+
+  private void load() throws IOException {
+    ByteBuffer index = mapIndex();
+    if (index.capacity() < INDEX_HEADER || index.getInt(0) != MAGIC) {
+      throw new IOException(indexPath + " is not an offline player index");
+    }
+
+    dataLength = Files.size(dataPath);
+    ByteBuffer data = mapData();
+    if (data.capacity() < DATA_HEADER || data.getInt(0) != MAGIC) {
+      throw new IOException(dataPath + " is not an offline player name file");
+    }
+
+    // records appended after the offset table was last written
+    List<String> pending = new ArrayList<>();
+    int position = index.getInt(8);
+    while (position + 2 <= dataLength) {
+      int length = data.getShort(position) & 0xffff;
+      if (position + 2 + length > dataLength) {
+        break;
+      }
+      String name = decode(data, position);
+      pendingOffsets.put(name, position);
+      pending.add(name);
+      position += 2 + length;
+    }
+
+    snapshot = new Snapshot(data, index, PrefixIndex.of(pending));
+  }
+
+  synchronized void append(String name) throws IOException {
+    Snapshot current = snapshot;
+    if (current.contains(name)) {
+      return;
+    }
+
+    ByteBuffer record = encode(name);
+    if (record == null) {
+      return;
+    }
+
+    int offset = (int) dataLength;
+    try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+      channel.position(dataLength);
+      int length = record.remaining();
+      try {
+        writeFully(channel, record);
+      } catch (IOException e) {
+        // drop whatever part of the record made it, load() would otherwise read it back
+        channel.truncate(dataLength);
+        throw e;
+      }
+      dataLength += length;
+    }
+    pendingOffsets.put(name, offset);
+
+    // the record is on disk, so it is published before compacting can fail
+    PrefixIndex pending = current.pending.with(name);
+    snapshot = new Snapshot(current.data, current.index, pending);
+    if (pending.size() < compactAt) {
+      return;
+    }
+
+    try {
+      compact();
+      compactAt = COMPACT_THRESHOLD;
+    } catch (IOException e) {
+      // the pending names still serve lookups, compacting is tried again once as many more have been added
+      compactAt = pending.size() + COMPACT_THRESHOLD;
+      Bukkit.getLogger().log(Level.WARNING, "Failed to compact offline player index in " + directory, e);
+    }
+  }
+
+  private void compact() throws IOException {
+    Snapshot current = snapshot;
+    writeIndex(merge(current, current.pending));
+    ByteBuffer data = mapData();
+    ByteBuffer index = mapIndex();
+    pendingOffsets.clear();
+    snapshot = new Snapshot(data, index, PrefixIndex.of(Collections.emptyList()));
+  }
+
+  private int[] merge(Snapshot current, PrefixIndex pending) {
+    int[] merged = new int[current.count + pending.size()];
+    Iterator<String> pendingNames = pending.startingWith("").iterator();
+    String pendingName = pendingNames.next();
+    int i = 0;
+    int j = 0;
+    while (i < current.count || pendingName != null) {
+      if (pendingName == null || i < current.count && compare(current.name(i), pendingName) < 0) {
+        merged[j++] = current.offset(i++);
+      } else {
+        merged[j++] = pendingOffsets.get(pendingName);
+        pendingName = pendingNames.hasNext() ? pendingNames.next() : null;
+      }
+    }
+    return merged;
+  }
+
+  private void writeIndex(int[] offsets) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER + offsets.length * 4);
+    buffer.putInt(MAGIC);
+    buffer.putInt(offsets.length);
+    buffer.putInt((int) dataLength);
+    for (int offset : offsets) {
+      buffer.putInt(offset);
+    }
+    buffer.flip();
+
+    long next = generation + 1;
+    Path nextPath = directory.resolve("names." + next + ".idx");
+    Path temporary = directory.resolve("names." + next + ".idx.tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(channel, buffer);
+      channel.force(true);
+    }
+    Files.move(temporary, nextPath, StandardCopyOption.ATOMIC_MOVE);
+
+    generation = next;
+    indexPath = nextPath;
+    deleteOlderGenerations();
+  }
+
+  // names.idx is the table written before generations were introduced
+  private void findLatestGeneration() throws IOException {
+    Path legacy = directory.resolve("names.idx");
+    if (Files.exists(legacy)) {
+      indexPath = legacy;
+    }
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "names.*.idx")) {
+      for (Path file : files) {
+        Matcher matcher = INDEX_NAME.matcher(file.getFileName().toString());
+        if (matcher.matches() && (indexPath == null || Long.parseLong(matcher.group(1)) > generation)) {
+          generation = Long.parseLong(matcher.group(1));
+          indexPath = file;
+        }
+      }
+    }
+  }
+
+  // A generation that is still mapped can't be deleted on every platform, it is then left for the next compaction
+  private void deleteOlderGenerations() {
+    deleteIfUnused(directory.resolve("names.idx"));
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "names.*.idx")) {
+      for (Path file : files) {
+        Matcher matcher = INDEX_NAME.matcher(file.getFileName().toString());
+        if (matcher.matches() && Long.parseLong(matcher.group(1)) < generation) {
+          deleteIfUnused(file);
+        }
+      }
+    } catch (IOException e) {
+      Bukkit.getLogger().log(Level.WARNING, "Failed to clean up offline player index in " + directory, e);
+    }
+  }
+
+  private static void deleteIfUnused(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // still mapped
+    }
+  }
+
+  private ByteBuffer mapData() throws IOException {
+    try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, dataLength);
+    }
+  }
+
+  private ByteBuffer mapIndex() throws IOException {
+    try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private static ByteBuffer encode(String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length == 0 || bytes.length > MAX_NAME_BYTES) {
+      return null;
+    }
+
+    ByteBuffer record = ByteBuffer.allocate(2 + bytes.length);
+    record.putShort((short) bytes.length).put(bytes).flip();
+    return record;
+  }
+
+  private static String decode(ByteBuffer data, int offset) {
+    byte[] bytes = new byte[data.getShort(offset) & 0xffff];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = data.get(offset + 2 + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static int compare(String a, String b) {
+    int result = a.toLowerCase(Locale.ENGLISH).compareTo(b.toLowerCase(Locale.ENGLISH));
+    return result != 0 ? result : a.compareTo(b);
+  }
+
+  private static final class Snapshot {
+    private final ByteBuffer data;
+    private final ByteBuffer index;
+    private final int count;
+    private final PrefixIndex pending;
+
+    private Snapshot(ByteBuffer data, ByteBuffer index, PrefixIndex pending) {
+      this.data = data;
+      this.index = index;
+      this.count = index.getInt(4);
+      this.pending = pending;
+    }
+
+    int size() {
+      return count + pending.size();
+    }
+
+    int offset(int i) {
+      return index.getInt(INDEX_HEADER + i * 4);
+    }
+
+    String name(int i) {
+      return decode(data, offset(i));
+    }
+
+    // first position whose lowercased name is not less than the key
+    int lowerBound(String key) {
+      int low = 0;
+      int high = count;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (name(mid).toLowerCase(Locale.ENGLISH).compareTo(key) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    int upperBound(String prefix, int from) {
+      int low = from;
+      int high = count;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (name(mid).toLowerCase(Locale.ENGLISH).startsWith(prefix)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    boolean contains(String name) {
+      if (pending.contains(name)) {
+        return true;
+      }
+
+      String key = name.toLowerCase(Locale.ENGLISH);
+      for (int i = lowerBound(key); i < count; i++) {
+        String candidate = name(i);
+        if (!candidate.toLowerCase(Locale.ENGLISH).equals(key)) {
+          return false;
+        }
+        if (candidate.equals(name)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    Set<String> startingWith(String prefix) {
+      String key = prefix.toLowerCase(Locale.ENGLISH);
+      int from = lowerBound(key);
+      int to = upperBound(key, from);
+      Set<String> recent = pending.startingWith(prefix);
+      if (from == to && recent.isEmpty()) {
+        return Collections.emptySet();
+      }
+      return new Range(this, from, to, recent);
+    }
+  }
+
+  private static final class Range extends AbstractSet<String> {
+    private final Snapshot snapshot;
+    private final int from;
+    private final int to;
+    private final Set<String> recent;
+
+    private Range(Snapshot snapshot, int from, int to, Set<String> recent) {
+      this.snapshot = snapshot;
+      this.from = from;
+      this.to = to;
+      this.recent = recent;
+    }
+
+    @Override
+    public int size() {
+      return to - from + recent.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof String)) {
+        return false;
+      }
+
+      String name = (String) o;
+      if (recent.contains(name)) {
+        return true;
+      }
+
+      String key = name.toLowerCase(Locale.ENGLISH);
+      for (int i = Math.max(from, snapshot.lowerBound(key)); i < to; i++) {
+        String candidate = snapshot.name(i);
+        if (!candidate.toLowerCase(Locale.ENGLISH).equals(key)) {
+          return false;
+        }
+        if (candidate.equals(name)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // both the mapped range and the recent names are sorted, so they are merged while iterating
+    @Override
+    public Iterator<String> iterator() {
+      Iterator<String> recentNames = recent.iterator();
+      return new Iterator<String>() {
+        private int next = from;
+        private String nextName = next < to ? snapshot.name(next) : null;
+        private String nextRecent = recentNames.hasNext() ? recentNames.next() : null;
+
+        @Override
+        public boolean hasNext() {
+          return nextName != null || nextRecent != null;
+        }
+
+        @Override
+        public String next() {
+          if (nextName == null && nextRecent == null) {
+            throw new NoSuchElementException();
+          }
+
+          String result;
+          if (nextRecent == null || nextName != null && compare(nextName, nextRecent) < 0) {
+            result = nextName;
+            next += 1;
+            nextName = next < to ? snapshot.name(next) : null;
+          } else {
+            result = nextRecent;
+            nextRecent = recentNames.hasNext() ? recentNames.next() : null;
+          }
+          return result;
+        }
+      };
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package se.hornta.commando.completers;
 
+import se.hornta.commando.CompletionOrder;
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -9,19 +10,51 @@ import java.util.Locale;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-public class OnlinePlayerCompleter implements IArgumentHandler {
+public class OnlinePlayerCompleter implements IStreamingArgumentHandler {
   @Override
   public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+    PrefixIndex names = OnlinePlayerIndex.getNames();
+    if (names != null) {
+      return names.startingWith(argument);
+    }
+
     return Bukkit
       .getOnlinePlayers()
       .stream()
       .map(Player::getName)
       .filter((String name) -> name.toLowerCase(Locale.ENGLISH).startsWith(argument.toLowerCase(Locale.ENGLISH)))
+      .sorted(CompletionOrder.CASE_INSENSITIVE.getComparator())
       .collect(Collectors.toCollection(LinkedHashSet::new));
   }
 
+  @Override
+  public boolean isPrefixMonotonic() {
+    return true;
+  }
+
+  @Override
+  public void streamItems(CommandSender sender, String argument, String[] prevArgs, ICompletionSink sink) {
+    sink.acceptAll(getItems(sender, argument, prevArgs));
+  }
+
+  @Override
+  public CompletionOrder getOrder() {
+    return CompletionOrder.CASE_INSENSITIVE;
+  }
+
   @Override
   public boolean test(Set<String> items, String argument) {
     return items.contains(argument);
   }
+
+  @Override
+  public boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+    PrefixIndex names = OnlinePlayerIndex.getNames();
+    if (names != null) {
+      return names.contains(argument);
+    }
+
+    Player player = Bukkit.getPlayerExact(argument);
+    return player != null && player.getName().equals(argument);
+  }
 }
@@ -0,0 +1,46 @@
+package se.hornta.commando.completers;
+
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public final class OnlinePlayerIndex {
+  private static final Object lock = new Object();
+  private static volatile PrefixIndex names;
+
+  private OnlinePlayerIndex() { }
+
+  // null until tracking has been started through Commando.registerListeners()
+  public static PrefixIndex getNames() {
+    return names;
+  }
+
+  public static void track(Collection<? extends Player> onlinePlayers) {
+    List<String> playerNames = new ArrayList<>(onlinePlayers.size());
+    for (Player player : onlinePlayers) {
+      playerNames.add(player.getName());
+    }
+
+    synchronized (lock) {
+      names = PrefixIndex.of(playerNames);
+    }
+  }
+
+  public static void add(String name) {
+    synchronized (lock) {
+      if (names != null) {
+        names = names.with(name);
+      }
+    }
+  }
+
+  public static void remove(String name) {
+    synchronized (lock) {
+      if (names != null) {
+        names = names.without(name);
+      }
+    }
+  }
+}
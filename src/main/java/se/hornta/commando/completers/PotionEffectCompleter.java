@@ -35,8 +35,23 @@ public class PotionEffectCompleter implements IArgumentHandler {
       .collect(Collectors.toSet());
   }
 
+  @Override
+  public boolean isPrefixMonotonic() {
+    return true;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
   @Override
   public boolean test(Set<String> items, String argument) {
     return items.contains(argument);
   }
+
+  @Override
+  public boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+    return items.contains(argument);
+  }
 }
@@ -0,0 +1,183 @@
+package se.hornta.commando.completers;
+
+import java.util.*;
+
+public final class PrefixIndex {
+  private final String[] keys;
+  private final String[] values;
+
+  private PrefixIndex(String[] keys, String[] values) {
+    this.keys = keys;
+    this.values = values;
+  }
+
+  public static PrefixIndex of(Collection<String> items) {
+    String[] values = items.toArray(new String[0]);
+    Arrays.sort(values, Comparator.comparing((String value) -> value.toLowerCase(Locale.ENGLISH)).thenComparing(Comparator.naturalOrder()));
+
+    String[] keys = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      keys[i] = values[i].toLowerCase(Locale.ENGLISH);
+    }
+
+    return new PrefixIndex(keys, values);
+  }
+
+  public static <E extends Enum<E>> PrefixIndex ofEnum(Class<E> type) {
+    E[] constants = type.getEnumConstants();
+    List<String> names = new ArrayList<>(constants.length);
+    for (E constant : constants) {
+      names.add(constant.name());
+    }
+    return of(names);
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  public PrefixIndex with(String value) {
+    String key = value.toLowerCase(Locale.ENGLISH);
+    int index = lowerBound(key);
+    while (index < keys.length && keys[index].equals(key) && values[index].compareTo(value) < 0) {
+      index += 1;
+    }
+
+    if (index < keys.length && values[index].equals(value)) {
+      return this;
+    }
+
+    String[] newKeys = new String[keys.length + 1];
+    String[] newValues = new String[values.length + 1];
+    System.arraycopy(keys, 0, newKeys, 0, index);
+    System.arraycopy(values, 0, newValues, 0, index);
+    newKeys[index] = key;
+    newValues[index] = value;
+    System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+    System.arraycopy(values, index, newValues, index + 1, values.length - index);
+    return new PrefixIndex(newKeys, newValues);
+  }
+
+  public PrefixIndex without(String value) {
+    int index = indexOf(value);
+    if (index < 0) {
+      return this;
+    }
+
+    String[] newKeys = new String[keys.length - 1];
+    String[] newValues = new String[values.length - 1];
+    System.arraycopy(keys, 0, newKeys, 0, index);
+    System.arraycopy(values, 0, newValues, 0, index);
+    System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+    System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+    return new PrefixIndex(newKeys, newValues);
+  }
+
+  public Set<String> startingWith(String prefix) {
+    if (prefix.isEmpty()) {
+      return new Range(0, values.length);
+    }
+
+    String key = prefix.toLowerCase(Locale.ENGLISH);
+    int from = lowerBound(key);
+    if (from == keys.length || !keys[from].startsWith(key)) {
+      return Collections.emptySet();
+    }
+    return new Range(from, upperBound(key, from));
+  }
+
+  public boolean contains(String value) {
+    return indexOf(value) >= 0;
+  }
+
+  private int indexOf(String value) {
+    String key = value.toLowerCase(Locale.ENGLISH);
+    for (int i = lowerBound(key); i < keys.length && keys[i].equals(key); i++) {
+      if (values[i].equals(value)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int lowerBound(String key) {
+    int low = 0;
+    int high = keys.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (keys[mid].compareTo(key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  // Keys sharing a prefix are contiguous, so the end of the range is found by galloping over them.
+  private int upperBound(String prefix, int from) {
+    int step = 1;
+    int low = from;
+    int high = from + 1;
+    while (high < keys.length && keys[high].startsWith(prefix)) {
+      low = high;
+      step <<= 1;
+      high = Math.min(keys.length, from + step);
+    }
+
+    while (low + 1 < high) {
+      int mid = (low + high) >>> 1;
+      if (keys[mid].startsWith(prefix)) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+    return high;
+  }
+
+  private final class Range extends AbstractSet<String> {
+    private final int from;
+    private final int to;
+
+    private Range(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof String)) {
+        return false;
+      }
+
+      int index = indexOf((String) o);
+      return index >= from && index < to;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return new Iterator<String>() {
+        private int next = from;
+
+        @Override
+        public boolean hasNext() {
+          return next < to;
+        }
+
+        @Override
+        public String next() {
+          if (next >= to) {
+            throw new NoSuchElementException();
+          }
+          return values[next++];
+        }
+      };
+    }
+  }
+}
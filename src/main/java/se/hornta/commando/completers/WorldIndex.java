@@ -0,0 +1,75 @@
+package se.hornta.commando.completers;
+
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public final class WorldIndex {
+  private static final PrefixIndex EMPTY = PrefixIndex.of(Collections.emptyList());
+  private static final Object lock = new Object();
+  private static volatile WorldIndex current;
+
+  private final PrefixIndex names;
+  private final Map<World.Environment, PrefixIndex> environments;
+
+  private WorldIndex(PrefixIndex names, Map<World.Environment, PrefixIndex> environments) {
+    this.names = names;
+    this.environments = environments;
+  }
+
+  // null until tracking has been started through Commando.registerListeners()
+  public static WorldIndex get() {
+    return current;
+  }
+
+  public static void track(Collection<? extends World> worlds) {
+    List<String> names = new ArrayList<>(worlds.size());
+    Map<World.Environment, List<String>> environmentNames = new EnumMap<>(World.Environment.class);
+    for (World world : worlds) {
+      names.add(world.getName());
+      environmentNames.computeIfAbsent(world.getEnvironment(), (World.Environment environment) -> new ArrayList<>()).add(world.getName());
+    }
+
+    Map<World.Environment, PrefixIndex> environments = new EnumMap<>(World.Environment.class);
+    for (Map.Entry<World.Environment, List<String>> entry : environmentNames.entrySet()) {
+      environments.put(entry.getKey(), PrefixIndex.of(entry.getValue()));
+    }
+
+    synchronized (lock) {
+      current = new WorldIndex(PrefixIndex.of(names), environments);
+    }
+  }
+
+  public static void add(World world) {
+    synchronized (lock) {
+      if (current != null) {
+        Map<World.Environment, PrefixIndex> environments = new EnumMap<>(current.environments);
+        environments.put(world.getEnvironment(), current.getNames(world.getEnvironment()).with(world.getName()));
+        current = new WorldIndex(current.names.with(world.getName()), environments);
+      }
+    }
+  }
+
+  public static void remove(World world) {
+    synchronized (lock) {
+      if (current != null) {
+        Map<World.Environment, PrefixIndex> environments = new EnumMap<>(current.environments);
+        environments.put(world.getEnvironment(), current.getNames(world.getEnvironment()).without(world.getName()));
+        current = new WorldIndex(current.names.without(world.getName()), environments);
+      }
+    }
+  }
+
+  public PrefixIndex getNames() {
+    return names;
+  }
+
+  public PrefixIndex getNames(World.Environment environment) {
+    return environments.getOrDefault(environment, EMPTY);
+  }
+}
@@ -1,5 +1,6 @@
 package se.hornta.commando.completers;
 
+import se.hornta.commando.CompletionOrder;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.command.CommandSender;
@@ -9,20 +10,52 @@ import java.util.Locale;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-public class WorldNormalCompleter implements IArgumentHandler {
+public class WorldNormalCompleter implements IStreamingArgumentHandler {
   @Override
   public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+    WorldIndex worlds = WorldIndex.get();
+    if (worlds != null) {
+      return worlds.getNames(World.Environment.NORMAL).startingWith(argument);
+    }
+
     return Bukkit
       .getWorlds()
       .stream()
       .filter((World world) -> world.getEnvironment() == World.Environment.NORMAL)
       .map(World::getName)
       .filter((String name) -> name.toLowerCase(Locale.ENGLISH).startsWith(argument.toLowerCase(Locale.ENGLISH)))
+      .sorted(CompletionOrder.CASE_INSENSITIVE.getComparator())
       .collect(Collectors.toCollection(LinkedHashSet::new));
   }
 
+  @Override
+  public boolean isPrefixMonotonic() {
+    return true;
+  }
+
+  @Override
+  public void streamItems(CommandSender sender, String argument, String[] prevArgs, ICompletionSink sink) {
+    sink.acceptAll(getItems(sender, argument, prevArgs));
+  }
+
+  @Override
+  public CompletionOrder getOrder() {
+    return CompletionOrder.CASE_INSENSITIVE;
+  }
+
   @Override
   public boolean test(Set<String> items, String argument) {
     return items.contains(argument);
   }
+
+  @Override
+  public boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+    WorldIndex worlds = WorldIndex.get();
+    if (worlds != null) {
+      return worlds.getNames(World.Environment.NORMAL).contains(argument);
+    }
+
+    World world = Bukkit.getWorld(argument);
+    return world != null && world.getEnvironment() == World.Environment.NORMAL && world.getName().equals(argument);
+  }
 }
@@ -0,0 +1,13 @@
+package se.hornta.commando;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Java 21 version of CommandThreads, a blocked handler only holds on to a virtual thread
+final class CommandThreads {
+  private CommandThreads() { }
+
+  static ExecutorService newExecutor() {
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Commando command ", 0).factory());
+  }
+}
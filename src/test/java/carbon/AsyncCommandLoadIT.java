@@ -0,0 +1,55 @@
+package carbon;
+
+import se.hornta.commando.Commando;
+import se.hornta.commando.ValidationResult;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs with the java21 profile against the multi-release JAR, where handlers get a virtual thread each
+public class AsyncCommandLoadIT {
+  private static final int HANDLERS = 10000;
+
+  @Test
+  public void testBlockedHandlersDoNotExhaustExecutor() throws Exception {
+    CountDownLatch started = new CountDownLatch(HANDLERS);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch finished = new CountDownLatch(HANDLERS);
+    AtomicInteger failures = new AtomicInteger();
+
+    Commando commando = new Commando();
+    commando.setMainThreadExecutor(Runnable::run);
+    commando.handleValidation((ValidationResult result) -> failures.incrementAndGet());
+    commando
+      .addCommand("skin")
+      .withHandler((CommandSender sender, String[] args, int typedArgs) -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        finished.countDown();
+      })
+      .async();
+
+    CommandSender sender = Mockito.mock(CommandSender.class);
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("skin");
+
+    for (int i = 0; i < HANDLERS; i++) {
+      commando.handleCommand(sender, command, new String[0]);
+    }
+
+    Assert.assertTrue(started.await(30, TimeUnit.SECONDS));
+    release.countDown();
+    Assert.assertTrue(finished.await(30, TimeUnit.SECONDS));
+    Assert.assertEquals(0, failures.get());
+  }
+}
@@ -1,17 +1,42 @@
 package carbon;
 
 import se.hornta.commando.CarbonArgument;
+import se.hornta.commando.CarbonArgumentType;
+import se.hornta.commando.CarbonCommand;
+import se.hornta.commando.CommandContext;
 import se.hornta.commando.Commando;
+import se.hornta.commando.CompletionOrder;
 import se.hornta.commando.ICarbonArgument;
 import se.hornta.commando.ICommandHandler;
+import se.hornta.commando.ITypedCommandHandler;
+import se.hornta.commando.ParsedArguments;
+import se.hornta.commando.ValidationResult;
+import se.hornta.commando.ValidationStatus;
 import se.hornta.commando.completers.IArgumentHandler;
+import se.hornta.commando.completers.ICompletionSink;
+import se.hornta.commando.completers.IStreamingArgumentHandler;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CarbonCommandTest {
   private Commando commando;
@@ -41,6 +66,17 @@ public class CarbonCommandTest {
     Mockito.verify(handler).getItems(sender, "", new String[] { "pig" });
   }
 
+  @Test(expected = Error.class)
+  public void testDependencyMustBeDeclaredFirst() {
+    ICarbonArgument arg = new CarbonArgument.Builder("foo").create();
+    ICarbonArgument arg2 = new CarbonArgument.Builder("bar").dependsOn(arg).create();
+
+    commando
+      .addCommand("foobar")
+      .withArgument(arg2)
+      .withArgument(arg);
+  }
+
   @Test
   public void testCatchRemaining() {
     ICommandHandler handler = Mockito.mock(ICommandHandler.class);
@@ -113,6 +149,599 @@ public class CarbonCommandTest {
     Mockito.verify(handler).handle(sender, new String[] { "default" }, 0);
   }
 
+  @Test
+  public void testTypedHandler() {
+    ITypedCommandHandler handler = Mockito.mock(ITypedCommandHandler.class);
+
+    commando
+      .addCommand("foobar")
+      .withArgument(new CarbonArgument.Builder("amount").setType(CarbonArgumentType.INTEGER).create())
+      .withArgument(new CarbonArgument.Builder("scale").setType(CarbonArgumentType.NUMBER).create())
+      .withArgument(new CarbonArgument.Builder("time").setType(CarbonArgumentType.DURATION).create())
+      .withHandler(handler);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("foobar");
+
+    commando.handleCommand(sender, command, new String[] { "64", "1.5", "1h,30m" });
+
+    ArgumentCaptor<ParsedArguments> captor = ArgumentCaptor.forClass(ParsedArguments.class);
+    Mockito.verify(handler).handle(Mockito.eq(sender), captor.capture());
+
+    ParsedArguments args = captor.getValue();
+    Assert.assertEquals(3, args.getTypedArgs());
+    Assert.assertEquals(64, args.getInt(0));
+    Assert.assertEquals(1.5, args.getDouble(1), 0);
+    Assert.assertEquals(5400, args.getDurationSeconds(2));
+    Assert.assertEquals("1.5", args.getString(1));
+  }
+
+  @Test
+  public void testNumberValidation() {
+    List<ValidationStatus> statuses = new ArrayList<>();
+    commando.handleValidation((ValidationResult result) -> statuses.add(result.getStatus()));
+
+    commando
+      .addCommand("foobar")
+      .withArgument(new CarbonArgument.Builder("amount").setType(CarbonArgumentType.INTEGER).create())
+      .withArgument(new CarbonArgument.Builder("scale").setMax(100).create())
+      .withHandler(Mockito.mock(ICommandHandler.class));
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("foobar");
+
+    commando.handleCommand(sender, command, new String[] { "12x", "1" });
+    commando.handleCommand(sender, command, new String[] { "3000000000", "1" });
+    commando.handleCommand(sender, command, new String[] { "-3000000000", "1" });
+    commando.handleCommand(sender, command, new String[] { "1", "1e3" });
+    commando.handleCommand(sender, command, new String[] { "1", "1,5" });
+    commando.handleCommand(sender, command, new String[] { "1", "1e400" });
+    commando.handleCommand(sender, command, new String[] { "1", "NaN" });
+    commando.handleCommand(sender, command, new String[] { "1", "0x1p3" });
+    commando.handleCommand(sender, command, new String[] { "1", "1d" });
+    commando.handleCommand(sender, command, new String[] { "1", "-1.5e1" });
+
+    Assert.assertEquals(Arrays.asList(
+      ValidationStatus.ERR_INCORRECT_TYPE,
+      ValidationStatus.ERR_INCORRECT_TYPE,
+      ValidationStatus.ERR_INCORRECT_TYPE,
+      ValidationStatus.ERR_MAX_LIMIT,
+      ValidationStatus.ERR_INCORRECT_TYPE,
+      ValidationStatus.ERR_MAX_LIMIT
+    ), statuses);
+  }
+
+  @Test
+  public void testDynamicPermission() {
+    ICommandHandler handler = Mockito.mock(ICommandHandler.class);
+
+    commando
+      .addCommand("warp")
+      .withArgument(new CarbonArgument.Builder("name").create())
+      .requiresPermission("warp.[0].[01].[1]")
+      .withHandler(handler);
+
+    Mockito.when(sender.hasPermission("warp.spawn.[01].[1]")).thenReturn(true);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("warp");
+
+    commando.handleCommand(sender, command, new String[] { "spawn" });
+    commando.handleCommand(sender, command, new String[] { "nether" });
+    Mockito.verify(handler).handle(sender, new String[] { "spawn" }, 1);
+    Mockito.verify(handler, Mockito.never()).handle(sender, new String[] { "nether" }, 1);
+  }
+
+  @Test
+  public void testHelpPermissionsAreCached() {
+    Player player = Mockito.mock(Player.class);
+
+    commando.addCommand("foo").requiresPermission("foo.use").withHandler(new NoopCommandHandler());
+    commando.addCommand("foo bar").requiresPermission("foo.use").withHandler(new NoopCommandHandler());
+
+    Mockito.when(player.hasPermission("foo.use")).thenReturn(true);
+
+    Assert.assertEquals(2, commando.getHelpTexts(player).size());
+    Assert.assertEquals(2, commando.getHelpTexts(player).size());
+    Mockito.verify(player, Mockito.times(1)).hasPermission("foo.use");
+
+    Mockito.when(player.hasPermission("foo.use")).thenReturn(false);
+    Assert.assertEquals(2, commando.getHelpTexts(player).size());
+
+    commando.invalidatePermissions(player);
+    Assert.assertEquals(0, commando.getHelpTexts(player).size());
+  }
+
+  @Test
+  public void testHelpPermissionsExpire() {
+    Player player = Mockito.mock(Player.class);
+
+    commando.setPermissionCacheMillis(0);
+    commando.addCommand("foo").requiresPermission("foo.use").withHandler(new NoopCommandHandler());
+
+    Mockito.when(player.hasPermission("foo.use")).thenReturn(true);
+    Assert.assertEquals(1, commando.getHelpTexts(player).size());
+
+    Mockito.when(player.hasPermission("foo.use")).thenReturn(false);
+    Assert.assertEquals(0, commando.getHelpTexts(player).size());
+  }
+
+  @Test
+  public void testValidationUsesAccepts() {
+    ICommandHandler handler = Mockito.mock(ICommandHandler.class);
+    IArgumentHandler argumentHandler = new IArgumentHandler() {
+      @Override
+      public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+        throw new AssertionError("getItems() should not be called when validating");
+      }
+
+      @Override
+      public boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+        return argument.equals("bar");
+      }
+    };
+
+    commando
+      .addCommand("foo")
+      .withArgument(new CarbonArgument.Builder("name").setHandler(argumentHandler).create())
+      .withHandler(handler);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("foo");
+
+    commando.handleCommand(sender, command, new String[] { "bar" });
+    commando.handleCommand(sender, command, new String[] { "baz" });
+    Mockito.verify(handler).handle(sender, new String[] { "bar" }, 1);
+    Mockito.verify(handler, Mockito.never()).handle(sender, new String[] { "baz" }, 1);
+  }
+
+  @Test
+  public void testCompletionNarrowsPreviousCandidates() {
+    List<String> requested = new ArrayList<>();
+    IArgumentHandler handler = new IArgumentHandler() {
+      @Override
+      public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+        requested.add(argument);
+        Set<String> items = new LinkedHashSet<>();
+        for (String item : Arrays.asList("stone", "stick", "sand")) {
+          if (item.startsWith(argument)) {
+            items.add(item);
+          }
+        }
+        return items;
+      }
+
+      @Override
+      public boolean isPrefixMonotonic() {
+        return true;
+      }
+    };
+
+    commando
+      .addCommand("give")
+      .withArgument(new CarbonArgument.Builder("item").setHandler(handler).create())
+      .withHandler(new NoopCommandHandler());
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("give");
+
+    Assert.assertEquals(Arrays.asList("sand", "stick", "stone"), commando.handleAutoComplete(sender, command, new String[] { "s" }));
+    Assert.assertEquals(Arrays.asList("stick", "stone"), commando.handleAutoComplete(sender, command, new String[] { "st" }));
+    Assert.assertEquals(Arrays.asList("stone"), commando.handleAutoComplete(sender, command, new String[] { "sto" }));
+    Assert.assertEquals(Arrays.asList("s"), requested);
+
+    commando.handleAutoComplete(sender, command, new String[] { "d" });
+    Assert.assertEquals(Arrays.asList("s", "d"), requested);
+  }
+
+  @Test
+  public void testCompletionLimitStopsSortedHandler() {
+    List<String> emitted = new ArrayList<>();
+    IStreamingArgumentHandler handler = new IStreamingArgumentHandler() {
+      @Override
+      public void streamItems(CommandSender sender, String argument, String[] prevArgs, ICompletionSink sink) {
+        for (String item : Arrays.asList("apple", "Banana", "cherry", "date", "elderberry")) {
+          emitted.add(item);
+          if (!sink.accept(item)) {
+            return;
+          }
+        }
+      }
+
+      @Override
+      public CompletionOrder getOrder() {
+        return CompletionOrder.CASE_INSENSITIVE;
+      }
+    };
+
+    commando
+      .addCommand("eat")
+      .withArgument(new CarbonArgument.Builder("fruit").setHandler(handler).create())
+      .withHandler(new NoopCommandHandler());
+    commando.setCompletionLimit(2);
+    commando.setCompletionOrder(CompletionOrder.CASE_INSENSITIVE);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("eat");
+
+    Assert.assertEquals(Arrays.asList("apple", "Banana"), commando.handleAutoComplete(sender, command, new String[] { "" }));
+    Assert.assertEquals(Arrays.asList("apple", "Banana", "cherry"), emitted);
+  }
+
+  @Test
+  public void testAsyncCompletionFallsBackAfterDeadline() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean slow = new AtomicBoolean(false);
+    IArgumentHandler handler = new IArgumentHandler() {
+      @Override
+      public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+        if (slow.get()) {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return new LinkedHashSet<>(Arrays.asList("spawn", "shop"));
+      }
+
+      @Override
+      public boolean isPrefixMonotonic() {
+        return false;
+      }
+    };
+
+    commando
+      .addCommand("warp")
+      .withArgument(new CarbonArgument.Builder("name").setHandler(handler).create())
+      .withHandler(new NoopCommandHandler());
+    commando.setCompletionDeadline(5000);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("warp");
+
+    Assert.assertEquals(Arrays.asList("shop", "spawn"), commando.handleAutoCompleteAsync(sender, command, new String[] { "s" }).get());
+
+    slow.set(true);
+    commando.setCompletionDeadline(20);
+    Assert.assertEquals(Arrays.asList("spawn"), commando.handleAutoCompleteAsync(sender, command, new String[] { "sp" }).get());
+    Assert.assertEquals(Collections.emptyList(), commando.handleAutoCompleteAsync(sender, command, new String[] { "x" }).get());
+    release.countDown();
+  }
+
+  @Test
+  public void testSlowCompletionIsServedStale() {
+    AtomicInteger calls = new AtomicInteger();
+    IArgumentHandler handler = new IArgumentHandler() {
+      @Override
+      public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return Collections.singleton("spawn" + calls.incrementAndGet());
+      }
+
+      @Override
+      public boolean isPrefixMonotonic() {
+        return false;
+      }
+    };
+
+    commando
+      .addCommand("warp")
+      .withArgument(new CarbonArgument.Builder("name").setHandler(handler).create())
+      .withHandler(new NoopCommandHandler());
+    commando.setCompletionBudget(handler, 1);
+    List<Runnable> mainThread = new ArrayList<>();
+    commando.setMainThreadExecutor(mainThread::add);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("warp");
+
+    Assert.assertEquals(Collections.singletonList("spawn1"), commando.handleAutoComplete(sender, command, new String[] { "s" }));
+    Assert.assertEquals(Long.valueOf(1), commando.getCompletionBudgetViolations().get(handler));
+    Assert.assertEquals(Collections.singletonList("spawn1"), commando.handleAutoComplete(sender, command, new String[] { "s" }));
+
+    // the handler isn't thread-safe so it is refreshed on the main thread
+    Assert.assertEquals(1, mainThread.size());
+    mainThread.get(0).run();
+    Assert.assertEquals(Collections.singletonList("spawn2"), commando.handleAutoComplete(sender, command, new String[] { "s" }));
+  }
+
+  @Test
+  public void testSlowCompletionIsNotSharedBetweenSenders() {
+    IArgumentHandler handler = new IArgumentHandler() {
+      @Override
+      public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return Collections.singleton(sender.getName() + "_home");
+      }
+    };
+
+    commando
+      .addCommand("home")
+      .withArgument(new CarbonArgument.Builder("name").setHandler(handler).create())
+      .withHandler(new NoopCommandHandler());
+    commando.setCompletionBudget(handler, 1);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("home");
+    CommandSender other = Mockito.mock(CommandSender.class);
+    Mockito.when(sender.getName()).thenReturn("hornta");
+    Mockito.when(other.getName()).thenReturn("notch");
+
+    Assert.assertEquals(Collections.singletonList("hornta_home"), commando.handleAutoComplete(sender, command, new String[] { "" }));
+    Assert.assertEquals(Collections.singletonList("notch_home"), commando.handleAutoComplete(other, command, new String[] { "" }));
+  }
+
+  @Test
+  public void testDependentCompletionsAreCached() {
+    AtomicInteger calls = new AtomicInteger();
+    IArgumentHandler handler = new IArgumentHandler() {
+      @Override
+      public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+        calls.incrementAndGet();
+        return new LinkedHashSet<>(Arrays.asList(prevArgs[0] + "_spawn", prevArgs[0] + "_shop"));
+      }
+
+      @Override
+      public boolean isPrefixMonotonic() {
+        return true;
+      }
+    };
+
+    ICarbonArgument world = new CarbonArgument.Builder("world").create();
+    ICarbonArgument warp = new CarbonArgument.Builder("warp").dependsOn(world).setHandler(handler).cacheCompletions(60000).create();
+
+    commando
+      .addCommand("warp")
+      .withArgument(world)
+      .withArgument(warp)
+      .withHandler(new NoopCommandHandler());
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("warp");
+
+    Assert.assertEquals(Arrays.asList("nether_shop", "nether_spawn"), commando.handleAutoComplete(sender, command, new String[] { "nether", "" }));
+    Assert.assertEquals(Arrays.asList("nether_spawn"), commando.handleAutoComplete(sender, command, new String[] { "nether", "nether_sp" }));
+    Assert.assertEquals(1, calls.get());
+
+    Assert.assertEquals(Arrays.asList("end_shop", "end_spawn"), commando.handleAutoComplete(sender, command, new String[] { "end", "" }));
+    Assert.assertEquals(2, calls.get());
+
+    commando.invalidateCompletionCache(warp);
+    commando.handleAutoComplete(sender, command, new String[] { "nether", "" });
+    Assert.assertEquals(3, calls.get());
+  }
+
+  @Test
+  public void testCachedCompletionsStillValidateDependencies() {
+    AtomicBoolean loaded = new AtomicBoolean(true);
+    IArgumentHandler worlds = new IArgumentHandler() {
+      @Override
+      public boolean accepts(CommandSender sender, String argument, String[] prevArgs) {
+        return loaded.get() && argument.equals("nether");
+      }
+    };
+    IArgumentHandler warps = new IArgumentHandler() {
+      @Override
+      public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+        return Collections.singleton("spawn");
+      }
+    };
+
+    ICarbonArgument world = new CarbonArgument.Builder("world").setHandler(worlds).create();
+    ICarbonArgument warp = new CarbonArgument.Builder("warp").dependsOn(world).setHandler(warps).cacheCompletions(60000).create();
+
+    commando
+      .addCommand("warp")
+      .withArgument(world)
+      .withArgument(warp)
+      .withHandler(new NoopCommandHandler());
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("warp");
+
+    Assert.assertEquals(Collections.singletonList("spawn"), commando.handleAutoComplete(sender, command, new String[] { "nether", "" }));
+    loaded.set(false);
+    Assert.assertEquals(Collections.emptyList(), commando.handleAutoComplete(sender, command, new String[] { "nether", "" }));
+  }
+
+  @Test
+  public void testAsyncCommandReportsFailure() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch reported = new CountDownLatch(1);
+    List<ValidationResult> results = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+
+    commando.setMainThreadExecutor(Runnable::run);
+    commando.handleValidation((ValidationResult result) -> {
+      results.add(result);
+      reported.countDown();
+    });
+    commando
+      .addCommand("fetch")
+      .withArgument(new CarbonArgument.Builder("name").create())
+      .withAsyncHandler((CommandContext context, ParsedArguments args) -> {
+        threads.add(Thread.currentThread());
+        throw new IllegalStateException(args.getString(0));
+      })
+      .async(executor);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("fetch");
+
+    commando.handleCommand(sender, command, new String[] { "steve" });
+    Assert.assertTrue(reported.await(5, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    Assert.assertNotEquals(Thread.currentThread(), threads.get(0));
+    Assert.assertEquals(ValidationStatus.ERR_HANDLER_FAILED, results.get(0).getStatus());
+    Assert.assertEquals("steve", results.get(0).getCause().getMessage());
+  }
+
+  @Test
+  public void testFutureCommandTimesOut() throws Exception {
+    CountDownLatch timedOut = new CountDownLatch(1);
+    CompletableFuture<String> lookup = new CompletableFuture<>();
+
+    commando.setMainThreadExecutor(Runnable::run);
+    commando.setTimeoutHandler((CommandSender sender, CarbonCommand command) -> timedOut.countDown());
+    CarbonCommand carbonCommand = commando
+      .addCommand("lookup")
+      .withFutureHandler((CommandContext context, ParsedArguments args) -> lookup)
+      .timeout(20);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("lookup");
+
+    commando.handleCommand(sender, command, new String[0]);
+
+    Assert.assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+    Assert.assertTrue(lookup.isCancelled());
+    Assert.assertEquals(1, carbonCommand.getLatency().getCount());
+  }
+
+  @Test
+  public void testCancelRunningCommands() {
+    CompletableFuture<String> lookup = new CompletableFuture<>();
+    List<ValidationResult> results = new ArrayList<>();
+
+    commando.setMainThreadExecutor(Runnable::run);
+    commando.handleValidation(results::add);
+    commando
+      .addCommand("lookup")
+      .withFutureHandler((CommandContext context, ParsedArguments args) -> lookup);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("lookup");
+
+    commando.handleCommand(sender, command, new String[0]);
+    commando.cancelRunningCommands();
+
+    Assert.assertTrue(lookup.isCancelled());
+    Assert.assertTrue(results.isEmpty());
+  }
+
+  @Test
+  public void testFutureHandlerReturningNullIsReported() {
+    List<ValidationResult> results = new ArrayList<>();
+
+    commando.setMainThreadExecutor(Runnable::run);
+    commando.handleValidation(results::add);
+    commando
+      .addCommand("lookup")
+      .withFutureHandler((CommandContext context, ParsedArguments args) -> null);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("lookup");
+
+    commando.handleCommand(sender, command, new String[0]);
+
+    Assert.assertEquals(1, results.size());
+    Assert.assertEquals(ValidationStatus.ERR_HANDLER_FAILED, results.get(0).getStatus());
+  }
+
+  @Test
+  public void testRemoveCommandSubtree() {
+    ICommandHandler handler = Mockito.mock(ICommandHandler.class);
+    commando.addCommand("arena join").withHandler(handler);
+    commando.addCommand("arena leave").withHandler(handler);
+    commando.addCommand("spawn").withHandler(handler);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("arena");
+    Assert.assertEquals(Arrays.asList("join", "leave"), commando.handleAutoComplete(sender, command, new String[] { "" }));
+
+    Assert.assertTrue(commando.removeCommand("arena"));
+    Assert.assertFalse(commando.removeCommand("arena"));
+
+    commando.handleCommand(sender, command, new String[] { "join" });
+    Mockito.verify(handler, Mockito.never()).handle(sender, new String[0], 0);
+    Assert.assertEquals(Collections.emptyList(), commando.handleAutoComplete(sender, command, new String[] { "" }));
+    Assert.assertEquals(1, commando.getHelpTexts().size());
+  }
+
+  @Test
+  public void testRemoveCommandDropsCompletionState() {
+    IArgumentHandler handler = Mockito.mock(IArgumentHandler.class);
+    Mockito.when(handler.getItems(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(Collections.singleton("spawn"));
+
+    commando
+      .addCommand("warp")
+      .withArgument(new CarbonArgument.Builder("name").setHandler(handler).create())
+      .withHandler(new NoopCommandHandler());
+    commando.setCompletionBudget(handler, 1000);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("warp");
+
+    Assert.assertEquals(Collections.singletonList("spawn"), commando.handleAutoComplete(sender, command, new String[] { "s" }));
+    Assert.assertTrue(commando.getCompletionBudgetViolations().containsKey(handler));
+
+    Assert.assertTrue(commando.removeCommand("warp"));
+    Assert.assertFalse(commando.getCompletionBudgetViolations().containsKey(handler));
+  }
+
+  @Test
+  public void testMostSpecificDefaultValue() {
+    ICommandHandler handler = Mockito.mock(ICommandHandler.class);
+    ICarbonArgument target = new CarbonArgument.Builder("target")
+      .setDefaultValue(CommandSender.class, "everyone")
+      .setDefaultValue(Player.class, "self")
+      .create();
+
+    commando
+      .addCommand("heal")
+      .withArgument(target)
+      .withHandler(handler);
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("heal");
+
+    Player player = Mockito.mock(Player.class);
+    commando.handleCommand(player, command, new String[0]);
+    commando.handleCommand(sender, command, new String[0]);
+
+    Mockito.verify(handler).handle(player, new String[] { "self" }, 0);
+    Mockito.verify(handler).handle(sender, new String[] { "everyone" }, 0);
+  }
+
+  @Test
+  public void testFrozenDispatchIgnoresCase() {
+    ICommandHandler handler = Mockito.mock(ICommandHandler.class);
+
+    commando
+      .addCommand("foo bar")
+      .withHandler(handler);
+    commando.freeze();
+
+    Command command = Mockito.mock(Command.class);
+    Mockito.when(command.getName()).thenReturn("FOO");
+
+    commando.handleCommand(sender, command, new String[] { "BaR" });
+    Mockito.verify(handler).handle(sender, new String[0], 0);
+  }
+
+  @Test(expected = Error.class)
+  public void testAddDuplicateCommand() {
+    commando.addCommand("arena join");
+    commando.addCommand("arena join");
+  }
+
+  @Test(expected = Error.class)
+  public void testAddCommandAfterFreeze() {
+    commando.addCommand("foo");
+    commando.freeze();
+    commando.addCommand("bar");
+  }
+
   @Test
   public void test() {
     ICarbonArgument homeArgument = new CarbonArgument.Builder("home")
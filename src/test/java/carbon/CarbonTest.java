@@ -21,11 +21,16 @@ import se.hornta.commando.CarbonCommand;
 import se.hornta.commando.Commando;
 import se.hornta.commando.ICarbonArgument;
 import se.hornta.commando.ICommandHandler;
+import se.hornta.commando.completers.BiomeCompleter;
+import se.hornta.commando.completers.IArgumentHandler;
+import se.hornta.commando.completers.MaterialCompleter;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.BiConsumer;
 
 @RunWith(PowerMockRunner.class)
@@ -321,6 +326,46 @@ public class CarbonTest {
     Assert.assertEquals(expected, result);
   }
 
+  @Test
+  public void completersAreSharedPerType() {
+    ICarbonArgument first = new CarbonArgument.Builder("first").setType(CarbonArgumentType.MATERIAL).create();
+    ICarbonArgument second = new CarbonArgument.Builder("second").setType(CarbonArgumentType.MATERIAL).create();
+
+    Assert.assertSame(first.getHandler(), second.getHandler());
+    Assert.assertSame(first.getHandler(), CompleterRegistry.get(CarbonArgumentType.MATERIAL));
+    Assert.assertSame(MaterialCompleter.class, CarbonArgumentType.MATERIAL.getCompleter());
+  }
+
+  @Test
+  public void completeWithRegisteredCompleter() {
+    String commandName = "test";
+
+    CompleterRegistry.register(CarbonArgumentType.BIOME, () -> new IArgumentHandler() {
+      @Override
+      public Set<String> getItems(CommandSender sender, String argument, String[] prevArgs) {
+        return new LinkedHashSet<>(Arrays.asList("TAIGA", "TUNDRA"));
+      }
+    });
+    try {
+      commando
+        .addCommand(commandName)
+        .withArgument(
+          new CarbonArgument.Builder("biome")
+            .setType(CarbonArgumentType.BIOME)
+            .create()
+        );
+
+      Command command = Mockito.mock(Command.class);
+      Mockito.when(command.getName()).thenReturn(commandName);
+
+      List<String> result = commando.handleAutoComplete(commandSender, command, new String[] { "t" });
+
+      Assert.assertEquals(Arrays.asList("TAIGA", "TUNDRA"), result);
+    } finally {
+      CompleterRegistry.register(CarbonArgumentType.BIOME, BiomeCompleter::new);
+    }
+  }
+
   @Test
   public void completeGameMode() {
     String commandName = "test";
@@ -9,6 +9,8 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(DateUtil.class)
@@ -23,6 +25,33 @@ public class DateUtilTest {
     Assert.assertEquals("1 <hour>", result);
   }
 
+  @Test
+  public void testFormatLargeSpan() {
+    Calendar from = new GregorianCalendar(2019, Calendar.AUGUST, 8);
+    Calendar to = new GregorianCalendar(2021, Calendar.NOVEMBER, 13, 4, 30);
+    Assert.assertEquals("2 <years> 3 <months>", DateUtil.formatDateDiff(from, to));
+    Assert.assertEquals("2 <years> 3 <months>", DateUtil.formatDateDiff(to, from));
+
+    to = new GregorianCalendar(2019, Calendar.AUGUST, 9, 0, 0, 30);
+    Assert.assertEquals("1 <day> 30 <seconds>", DateUtil.formatDateDiff(from, to));
+
+    to = new GregorianCalendar(5000, Calendar.AUGUST, 8);
+    Assert.assertEquals("1000 <years>", DateUtil.formatDateDiff(from, to));
+  }
+
+  @Test
+  public void testFormatIntoBuilder() {
+    Calendar from = new GregorianCalendar(2019, Calendar.AUGUST, 8);
+    Calendar to = new GregorianCalendar(2019, Calendar.AUGUST, 8, 0, 5);
+    StringBuilder builder = new StringBuilder("expires in ");
+    DateUtil.formatDateDiff(builder, from, to);
+    Assert.assertEquals("expires in 5 <minutes>", builder.toString());
+
+    builder.setLength(0);
+    DateUtil.formatDateDiff(builder, from, from);
+    Assert.assertEquals("<now>", builder.toString());
+  }
+
   @Test
   public void testParser() throws Exception {
     long result;
@@ -80,4 +109,57 @@ public class DateUtilTest {
     result = DateUtil.parseDuration(from, "1h,30m", true);
     Assert.assertEquals(fromSeconds + 3600 + 60 * 30, result);
   }
+
+  @Test
+  public void testParserParity() {
+    String[] zones = new String[] { "Europe/Stockholm", "UTC", "America/New_York", "Australia/Lord_Howe" };
+    String[] units = new String[] { "y", "mo", "w", "d", "h", "m", "s", "year", "month", "min", "S", "MO", ",", "x", " ", "-" };
+    Random random = new Random(42);
+
+    for (int i = 0; i < 20000; i++) {
+      // large past durations are kept out since the legacy Calendar switches to the Julian calendar before 1582
+      boolean future = random.nextInt(4) != 0;
+      StringBuilder input = new StringBuilder();
+      int parts = random.nextInt(5);
+      for (int j = 0; j < parts; j++) {
+        if (random.nextInt(4) != 0) {
+          input.append(random.nextInt(future && random.nextInt(4) == 0 ? 100000 : 30));
+        }
+        input.append(units[random.nextInt(units.length)]);
+      }
+
+      GregorianCalendar from = new GregorianCalendar(TimeZone.getTimeZone(zones[random.nextInt(zones.length)]));
+      from.clear();
+      from.set(2000 + random.nextInt(40), random.nextInt(12), 1 + random.nextInt(28), 12, random.nextInt(60), random.nextInt(60));
+
+      assertParity(from, input.toString(), future);
+    }
+
+    GregorianCalendar from = new GregorianCalendar(2019, Calendar.AUGUST, 8);
+    assertParity(from, "5000y", true);
+    assertParity(from, "2000000000s", true);
+    assertParity(from, "99999999999s", true);
+    assertParity(from, "1d1y", true);
+    assertParity(from, "foo10minutes", true);
+    assertParity(from, "1mo2w", false);
+    assertParity(from, "", true);
+  }
+
+  private static void assertParity(Calendar from, String input, boolean future) {
+    Long expected;
+    try {
+      expected = LegacyDurationParser.parseDuration(from, input, future);
+    } catch (IllegalArgumentException e) {
+      expected = null;
+    }
+
+    Long actual;
+    try {
+      actual = DateUtil.parseDuration(from, input, future);
+    } catch (IllegalArgumentException e) {
+      actual = null;
+    }
+
+    Assert.assertEquals("'" + input + "' from " + from.getTime() + " in " + from.getTimeZone().getID(), expected, actual);
+  }
 }
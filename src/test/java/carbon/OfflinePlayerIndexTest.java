@@ -0,0 +1,66 @@
+package carbon;
+
+import se.hornta.commando.completers.OfflinePlayerIndex;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Bukkit.class)
+public class OfflinePlayerIndexTest {
+  private static OfflinePlayer offlinePlayer(String name) {
+    OfflinePlayer player = Mockito.mock(OfflinePlayer.class);
+    Mockito.when(player.getName()).thenReturn(name);
+    return player;
+  }
+
+  @Test
+  public void testPrefixQueriesAndAppend() throws IOException {
+    File directory = Files.createTempDirectory("commando").toFile();
+    PowerMockito.mockStatic(Bukkit.class);
+    Mockito.when(Bukkit.getOfflinePlayers()).thenReturn(new OfflinePlayer[] {
+      offlinePlayer("Notch"),
+      offlinePlayer("jeb_"),
+      offlinePlayer("hornta"),
+      offlinePlayer(null)
+    });
+
+    OfflinePlayerIndex.configure(directory);
+    OfflinePlayerIndex index = OfflinePlayerIndex.whenReady().join();
+
+    Assert.assertEquals(3, index.size());
+    Assert.assertEquals(new HashSet<>(Arrays.asList("Notch")), new HashSet<>(index.startingWith("no")));
+    Assert.assertTrue(index.contains("jeb_"));
+    Assert.assertFalse(index.contains("JEB_"));
+
+    OfflinePlayerIndex.add("Herobrine");
+    OfflinePlayerIndex.add("Notch");
+    OfflinePlayerIndex.whenReady().join();
+    Assert.assertEquals(4, index.size());
+    Assert.assertEquals(new HashSet<>(Arrays.asList("hornta", "Herobrine")), new HashSet<>(index.startingWith("H")));
+
+    // reopening reads the files back and only adds the names Bukkit knows about that are missing
+    Mockito.when(Bukkit.getOfflinePlayers()).thenReturn(new OfflinePlayer[] {
+      offlinePlayer("Notch"),
+      offlinePlayer("Dinnerbone")
+    });
+    OfflinePlayerIndex.configure(directory);
+    OfflinePlayerIndex reopened = OfflinePlayerIndex.whenReady().join();
+    Assert.assertEquals(5, reopened.size());
+    Assert.assertTrue(reopened.contains("Herobrine"));
+    Assert.assertTrue(reopened.contains("Dinnerbone"));
+    OfflinePlayerIndex.close();
+  }
+}
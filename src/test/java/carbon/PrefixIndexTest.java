@@ -0,0 +1,76 @@
+package carbon;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.hornta.commando.completers.PrefixIndex;
+
+import java.util.*;
+
+public class PrefixIndexTest {
+  @Test
+  public void testStartingWith() {
+    PrefixIndex index = PrefixIndex.of(Arrays.asList("STONE", "STONE_BRICKS", "Stick", "DIRT", "SAND", "SANDSTONE"));
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList("STONE", "STONE_BRICKS", "Stick")), new HashSet<>(index.startingWith("st")));
+    Assert.assertEquals(new HashSet<>(Arrays.asList("STONE", "STONE_BRICKS")), new HashSet<>(index.startingWith("StOnE")));
+    Assert.assertEquals(Collections.singleton("DIRT"), new HashSet<>(index.startingWith("d")));
+    Assert.assertEquals(6, index.startingWith("").size());
+    Assert.assertTrue(index.startingWith("x").isEmpty());
+    Assert.assertTrue(index.startingWith("stones").isEmpty());
+  }
+
+  @Test
+  public void testContains() {
+    PrefixIndex index = PrefixIndex.of(Arrays.asList("STONE", "STONE_BRICKS", "SAND"));
+    Set<String> view = index.startingWith("stone");
+
+    Assert.assertTrue(view.contains("STONE"));
+    Assert.assertFalse(view.contains("stone"));
+    Assert.assertFalse(view.contains("SAND"));
+    Assert.assertTrue(index.contains("SAND"));
+  }
+
+  @Test
+  public void testWithAndWithout() {
+    PrefixIndex index = PrefixIndex.of(Arrays.asList("Notch", "jeb_"));
+    PrefixIndex added = index.with("hornta").with("Herobrine");
+
+    Assert.assertEquals(2, index.size());
+    Assert.assertEquals(4, added.size());
+    Assert.assertSame(added, added.with("hornta"));
+    Assert.assertEquals(new HashSet<>(Arrays.asList("hornta", "Herobrine")), new HashSet<>(added.startingWith("H")));
+
+    PrefixIndex removed = added.without("Notch");
+    Assert.assertEquals(3, removed.size());
+    Assert.assertTrue(removed.startingWith("no").isEmpty());
+    Assert.assertSame(removed, removed.without("Notch"));
+    Assert.assertTrue(added.contains("Notch"));
+  }
+
+  @Test
+  public void testMatchesLinearScan() {
+    Random random = new Random(1);
+    List<String> items = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder builder = new StringBuilder();
+      int length = 1 + random.nextInt(6);
+      for (int j = 0; j < length; j++) {
+        builder.append("abAB_".charAt(random.nextInt(5)));
+      }
+      items.add(builder.toString());
+    }
+    PrefixIndex index = PrefixIndex.of(new HashSet<>(items));
+
+    for (int i = 0; i < 500; i++) {
+      String item = items.get(random.nextInt(items.size()));
+      String prefix = item.substring(0, 1 + random.nextInt(item.length()));
+      Set<String> expected = new HashSet<>();
+      for (String candidate : items) {
+        if (candidate.toLowerCase(Locale.ENGLISH).startsWith(prefix.toLowerCase(Locale.ENGLISH))) {
+          expected.add(candidate);
+        }
+      }
+      Assert.assertEquals(expected, new HashSet<>(index.startingWith(prefix)));
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package carbon;
+
+import se.hornta.commando.completers.WorldIndex;
+import org.bukkit.World;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class WorldIndexTest {
+  private static World world(String name, World.Environment environment) {
+    World world = Mockito.mock(World.class);
+    Mockito.when(world.getName()).thenReturn(name);
+    Mockito.when(world.getEnvironment()).thenReturn(environment);
+    return world;
+  }
+
+  @Test
+  public void testTracksLoadAndUnload() {
+    World lobby = world("lobby", World.Environment.NORMAL);
+    World lobbyNether = world("lobby_nether", World.Environment.NETHER);
+    World arena = world("arena", World.Environment.NORMAL);
+
+    WorldIndex.track(Arrays.asList(lobby, lobbyNether));
+    Assert.assertEquals(new HashSet<>(Arrays.asList("lobby", "lobby_nether")), new HashSet<>(WorldIndex.get().getNames().startingWith("lob")));
+    Assert.assertEquals(new HashSet<>(Arrays.asList("lobby")), new HashSet<>(WorldIndex.get().getNames(World.Environment.NORMAL).startingWith("lob")));
+    Assert.assertTrue(WorldIndex.get().getNames(World.Environment.THE_END).startingWith("").isEmpty());
+
+    WorldIndex.add(arena);
+    Assert.assertTrue(WorldIndex.get().getNames(World.Environment.NORMAL).contains("arena"));
+
+    WorldIndex.remove(lobby);
+    Assert.assertFalse(WorldIndex.get().getNames().contains("lobby"));
+    Assert.assertFalse(WorldIndex.get().getNames(World.Environment.NORMAL).contains("lobby"));
+    Assert.assertTrue(WorldIndex.get().getNames().contains("lobby_nether"));
+  }
+}